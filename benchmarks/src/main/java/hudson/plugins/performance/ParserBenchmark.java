@@ -0,0 +1,136 @@
+package hudson.plugins.performance;
+
+import hudson.util.StreamTaskListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the report parsers, in files, samples and bytes parsed per
+ * second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+  /**
+   * Samples of the reports. The summariser logs a line for each second of
+   * them.
+   */
+  @Param({ "10000", "1000000" })
+  public int samples;
+
+  @Param({ "100" })
+  public int uris;
+
+  private File jmeterXml;
+
+  private File junit;
+
+  private File summarizer;
+
+  private final StreamTaskListener listener = new StreamTaskListener(
+      new OutputStream() {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+      });
+
+  /**
+   * Samples and bytes parsed, reported per second next to the parses.
+   */
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Parsed {
+
+    public long samples;
+
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      samples = 0;
+      bytes = 0;
+    }
+
+    void add(Collection<PerformanceReport> reports, File file) {
+      for (PerformanceReport report : reports) {
+        samples += report.size();
+      }
+      bytes += file.length();
+    }
+  }
+
+  @Setup(Level.Trial)
+  public void writeReports() throws IOException {
+    jmeterXml = File.createTempFile("benchmark", ".jtl");
+    Samples.write(WorkloadGenerator.Format.JTL_XML, jmeterXml, samples, uris);
+    junit = File.createTempFile("TEST-benchmark", ".xml");
+    Samples.write(WorkloadGenerator.Format.JUNIT, junit, samples, uris);
+    summarizer = File.createTempFile("benchmark", ".log");
+    WorkloadGenerator generator = Samples.getGenerator(samples, uris,
+        Samples.SEED);
+    generator.setSummaryInterval(1);
+    generator.write(WorkloadGenerator.Format.SUMMARIZER, summarizer);
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteReports() {
+    jmeterXml.delete();
+    junit.delete();
+    summarizer.delete();
+  }
+
+  private Collection<PerformanceReport> parse(PerformanceReportParser parser,
+      File file, Parsed parsed) throws IOException {
+    Collection<PerformanceReport> reports = parser.parse(null,
+        Collections.singleton(file), listener);
+    parsed.add(reports, file);
+    return reports;
+  }
+
+  @Benchmark
+  public Collection<PerformanceReport> jmeterXml(Parsed parsed)
+      throws IOException {
+    return parse(new JMeterParser(""), jmeterXml, parsed);
+  }
+
+  @Benchmark
+  public Collection<PerformanceReport> junit(Parsed parsed) throws IOException {
+    return parse(new JUnitParser(""), junit, parsed);
+  }
+
+  @Benchmark
+  public Collection<PerformanceReport> summarizer(Parsed parsed)
+      throws IOException {
+    return parse(new JmeterSummarizerParser(""), summarizer, parsed);
+  }
+}
@@ -0,0 +1,79 @@
+package hudson.plugins.performance;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to compute the percentiles, average and summary of a report of several
+ * URIs.
+ *
+ * The percentiles sort the samples of all the URIs, so the samples are
+ * shuffled again before each of them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class PerformanceReportBenchmark {
+
+  @Param({ "10000", "1000000", "10000000" })
+  public int samples;
+
+  @Param({ "100" })
+  public int uris;
+
+  private PerformanceReport report;
+
+  private final Random random = new Random(Samples.SEED);
+
+  @Setup(Level.Trial)
+  public void createReport() throws Exception {
+    report = Samples.newReport();
+    for (HttpSample sample : Samples.create(samples, uris)) {
+      report.addSample(sample);
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void shuffle() {
+    for (UriReport uriReport : report.getUriListOrdered()) {
+      Collections.shuffle(uriReport.getHttpSampleList(), random);
+    }
+  }
+
+  @Benchmark
+  public long average() {
+    return report.getAverage();
+  }
+
+  @Benchmark
+  public long median() {
+    return report.getMedian();
+  }
+
+  @Benchmark
+  public long line90() {
+    return report.get90Line();
+  }
+
+  @Benchmark
+  public PerformanceReportSummary summary() {
+    return new PerformanceReportSummary(report);
+  }
+}
@@ -0,0 +1,70 @@
+package hudson.plugins.performance;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.easymock.classextension.EasyMock;
+
+/**
+ * Synthetic samples and reports for the benchmarks, made by a
+ * {@link WorkloadGenerator} with its defaults: 100 samples per second, with
+ * lognormal durations around 200 ms and 1% of errors.
+ */
+final class Samples {
+
+  static final long SEED = 42;
+
+  private Samples() {
+  }
+
+  static WorkloadGenerator getGenerator(int count, int uris, long seed) {
+    WorkloadGenerator generator = new WorkloadGenerator();
+    generator.setSamples(count);
+    generator.setLabels(uris);
+    generator.setSeed(seed);
+    return generator;
+  }
+
+  /**
+   * @return the samples, in the order a load generator would log them
+   */
+  static List<HttpSample> create(int count, int uris) {
+    return create(count, uris, SEED);
+  }
+
+  /**
+   * @return the samples of another run, which differ with the seed
+   */
+  static List<HttpSample> create(int count, int uris, long seed) {
+    List<HttpSample> samples = new ArrayList<HttpSample>(count);
+    for (HttpSample sample : getGenerator(count, uris, seed)) {
+      samples.add(sample);
+    }
+    return samples;
+  }
+
+  /**
+   * Writes a report of the samples.
+   */
+  static void write(WorkloadGenerator.Format format, File file, int count,
+      int uris) throws IOException {
+    getGenerator(count, uris, SEED).write(format, file);
+  }
+
+  /**
+   * @return an empty report of a build that didn't use the summariser parser
+   */
+  static PerformanceReport newReport() {
+    PerformanceReportMap reportMap = EasyMock.createNiceMock(PerformanceReportMap.class);
+    PerformanceBuildAction buildAction = EasyMock.createNiceMock(PerformanceBuildAction.class);
+    EasyMock.expect(buildAction.getPerformanceReportMap()).andStubReturn(
+        reportMap);
+    EasyMock.replay(reportMap, buildAction);
+    PerformanceReport report = new PerformanceReport();
+    report.setBuildAction(buildAction);
+    report.setReportFileName("benchmark.jtl");
+    return report;
+  }
+}
@@ -0,0 +1,99 @@
+package hudson.plugins.performance;
+
+import hudson.model.AbstractBuild;
+import hudson.model.FreeStyleBuild;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.easymock.classextension.EasyMock;
+import org.jfree.data.category.CategoryDataset;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to build the datasets of the trend graphs from the summaries of the
+ * builds, once the trend is computed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TrendBenchmark {
+
+  /**
+   * Number of distinct runs the builds take their summaries from.
+   */
+  private static final int RUNS = 20;
+
+  @Param({ "100", "1000" })
+  public int builds;
+
+  @Param({ "100" })
+  public int uris;
+
+  /**
+   * Width of the graphs, in pixels.
+   */
+  @Param({ "400" })
+  public int width;
+
+  private PerformanceTrend trend;
+
+  @Setup(Level.Trial)
+  public void createTrend() throws Exception {
+    List<PerformanceReportSummary> summaries = new ArrayList<PerformanceReportSummary>();
+    for (int run = 0; run < RUNS; run++) {
+      PerformanceReport report = Samples.newReport();
+      for (HttpSample sample : Samples.create(100 * uris, uris, run)) {
+        report.addSample(sample);
+      }
+      summaries.add(new PerformanceReportSummary(report));
+    }
+    // newest build first, like the trends of the project action
+    List<PerformanceTrend.Point> points = new ArrayList<PerformanceTrend.Point>();
+    for (int number = builds; number > 0; number--) {
+      FreeStyleBuild build = EasyMock.createNiceMock(FreeStyleBuild.class);
+      build.number = number;
+      EasyMock.replay(build);
+      points.add(new PerformanceTrend.Point(build, summaries.get(number
+          % RUNS)));
+    }
+    trend = new PerformanceTrend("benchmark.jtl", points,
+        new ArrayList<AbstractBuild<?, ?>>());
+  }
+
+  @Benchmark
+  public CategoryDataset respondingTime() {
+    return trend.downsample(width, PerformanceTrend.Metric.LINE90).getRespondingTimeDataSet().build();
+  }
+
+  @Benchmark
+  public CategoryDataset errors() {
+    return trend.downsample(width, PerformanceTrend.Metric.ERROR_PERCENT).getErrorsDataSet().build();
+  }
+
+  @Benchmark
+  public CategoryDataset throughput() {
+    return trend.downsample(width, PerformanceTrend.Metric.THROUGHPUT).getThroughputDataSet().build();
+  }
+
+  @Benchmark
+  public CategoryDataset slowestUris() {
+    return trend.getTestCaseDataSet(
+        trend.getSlowestUris(PerformanceTrend.MAX_TEST_CASES)).build();
+  }
+}
@@ -0,0 +1,85 @@
+package hudson.plugins.performance;
+
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to compute the percentiles and average of the samples of a URI, kept
+ * in memory or aggregated as past the heap budget.
+ *
+ * The percentiles sort the samples in place, so the samples are shuffled
+ * again before each of them; otherwise only the first would pay for sorting.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class UriReportBenchmark {
+
+  @Param({ "10000", "1000000", "10000000" })
+  public int samples;
+
+  /**
+   * Whether the report only keeps the aggregates of its samples.
+   */
+  @Param({ "false", "true" })
+  public boolean aggregated;
+
+  private UriReport uriReport;
+
+  private final Random random = new Random(Samples.SEED);
+
+  @Setup(Level.Trial)
+  public void createReport() {
+    uriReport = new UriReport(Samples.newReport(), "all", "all");
+    for (HttpSample sample : Samples.create(samples, 1)) {
+      uriReport.addHttpSample(sample);
+    }
+    if (aggregated) {
+      uriReport.aggregate();
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void shuffle() {
+    if (!aggregated) {
+      Collections.shuffle(uriReport.getHttpSampleList(), random);
+    }
+  }
+
+  @Benchmark
+  public long average() {
+    return uriReport.getAverage();
+  }
+
+  @Benchmark
+  public long median() {
+    return uriReport.getMedian();
+  }
+
+  @Benchmark
+  public long line90() {
+    return uriReport.get90Line();
+  }
+
+  @Benchmark
+  public UriReportSummary summary() {
+    return new UriReportSummary(uriReport);
+  }
+}
@@ -0,0 +1,573 @@
+package hudson.plugins.performance;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TimeZone;
+
+/**
+ * Generates synthetic load test results of a controlled size and shape, the
+ * same for the same seed, to benchmark and soak test the plugin with.
+ *
+ * Samples are spread over a number of labels and logged by a number of load
+ * generators, whose clocks are not aligned, so that their timestamps
+ * interleave out of order as in the merged results of a distributed test.
+ *
+ * Run it from the benchmarks jar, for instance:
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar hudson.plugins.performance.WorkloadGenerator \
+ *     --format=jtl-csv --samples=1000000 --labels=500 --distribution=bimodal \
+ *     --generators=4 --out=results.jtl
+ * </pre>
+ */
+public class WorkloadGenerator implements Iterable<HttpSample> {
+
+  /**
+   * Format of the generated report.
+   */
+  public enum Format {
+    /**
+     * JMeter XML results, as parsed by {@link JMeterParser}.
+     */
+    JTL_XML,
+    /**
+     * JMeter CSV results, with the default columns and a header.
+     */
+    JTL_CSV,
+    /**
+     * A JUnit report with a test case per sample, as parsed by
+     * {@link JUnitParser}.
+     */
+    JUNIT,
+    /**
+     * The log of a JMeter summariser, as parsed by
+     * {@link JmeterSummarizerParser}.
+     */
+    SUMMARIZER
+  }
+
+  /**
+   * Shape of the durations of the samples.
+   */
+  public enum Distribution {
+    /**
+     * Lognormal durations around the median.
+     */
+    LOGNORMAL {
+      long getDuration(WorkloadGenerator generator, Random random, long time) {
+        return generator.getLognormal(random, generator.median);
+      }
+    },
+    /**
+     * Lognormal durations around the median, except for a share of slow
+     * samples around the median times the slow factor, as with a cache that
+     * misses.
+     */
+    BIMODAL {
+      long getDuration(WorkloadGenerator generator, Random random, long time) {
+        boolean slow = random.nextDouble() * 100 < generator.slowPercent;
+        return generator.getLognormal(random, slow ? generator.median
+            * generator.slowFactor : generator.median);
+      }
+    },
+    /**
+     * Lognormal durations around the median, except during spikes, at
+     * regular intervals, where they are around the median times the spike
+     * factor, as with a pausing garbage collector.
+     */
+    SPIKES {
+      long getDuration(WorkloadGenerator generator, Random random, long time) {
+        boolean spike = (time - generator.start) % generator.spikeInterval < generator.spikeLength;
+        return generator.getLognormal(random, spike ? generator.median
+            * generator.spikeFactor : generator.median);
+      }
+    };
+
+    abstract long getDuration(WorkloadGenerator generator, Random random,
+        long time);
+  }
+
+  private static final String USAGE = "Usage: WorkloadGenerator --out=FILE"
+      + " [--format=jtl-xml|jtl-csv|junit|summarizer] [--samples=N]"
+      + " [--labels=N] [--distribution=lognormal|bimodal|spikes]"
+      + " [--median=MS] [--sigma=S] [--slow-percent=P] [--slow-factor=F]"
+      + " [--spike-interval=MS] [--spike-length=MS] [--spike-factor=F]"
+      + " [--error-percent=P] [--generators=N] [--rate=N]"
+      + " [--summary-interval=S] [--seed=N]";
+
+  private int samples = 10000;
+
+  private int labels = 100;
+
+  private Distribution distribution = Distribution.LOGNORMAL;
+
+  /**
+   * Median duration, in milliseconds.
+   */
+  private double median = 200;
+
+  /**
+   * Standard deviation of the logarithm of the durations.
+   */
+  private double sigma = 0.5;
+
+  private double slowPercent = 10;
+
+  private double slowFactor = 10;
+
+  /**
+   * Time between the starts of two spikes, in milliseconds.
+   */
+  private long spikeInterval = 60 * 1000;
+
+  /**
+   * Length of a spike, in milliseconds.
+   */
+  private long spikeLength = 5 * 1000;
+
+  private double spikeFactor = 20;
+
+  private double errorPercent = 1;
+
+  private int generators = 1;
+
+  /**
+   * Samples per second, of all the generators together.
+   */
+  private double rate = 100;
+
+  /**
+   * Seconds between two lines of the summariser log.
+   */
+  private int summaryInterval = 30;
+
+  private long seed = 42;
+
+  /**
+   * Time of the first sample, in milliseconds.
+   */
+  private long start = 1300000000000L;
+
+  public static void main(String[] args) throws IOException {
+    WorkloadGenerator generator = new WorkloadGenerator();
+    Format format = Format.JTL_XML;
+    File out = null;
+    try {
+      for (String arg : args) {
+        int equals = arg.indexOf('=');
+        if (!arg.startsWith("--") || equals < 0) {
+          throw new IllegalArgumentException(arg);
+        }
+        String name = arg.substring(2, equals);
+        String value = arg.substring(equals + 1);
+        if (name.equals("out")) {
+          out = new File(value);
+        } else if (name.equals("format")) {
+          format = Format.valueOf(toConstant(value));
+        } else {
+          generator.set(name, value);
+        }
+      }
+    } catch (IllegalArgumentException e) {
+      System.err.println("Invalid option " + e.getMessage());
+      System.err.println(USAGE);
+      System.exit(1);
+    }
+    if (out == null) {
+      System.err.println(USAGE);
+      System.exit(1);
+    }
+    generator.write(format, out);
+  }
+
+  private static String toConstant(String value) {
+    return value.toUpperCase(Locale.ENGLISH).replace('-', '_');
+  }
+
+  /**
+   * Sets an option from its command line name.
+   *
+   * @throws IllegalArgumentException
+   *             if there is no such option or the value is invalid
+   */
+  void set(String name, String value) {
+    try {
+      if (name.equals("samples")) {
+        setSamples(Integer.parseInt(value));
+      } else if (name.equals("labels")) {
+        setLabels(Integer.parseInt(value));
+      } else if (name.equals("distribution")) {
+        setDistribution(Distribution.valueOf(toConstant(value)));
+      } else if (name.equals("median")) {
+        setMedian(Double.parseDouble(value));
+      } else if (name.equals("sigma")) {
+        setSigma(Double.parseDouble(value));
+      } else if (name.equals("slow-percent")) {
+        setSlowPercent(Double.parseDouble(value));
+      } else if (name.equals("slow-factor")) {
+        setSlowFactor(Double.parseDouble(value));
+      } else if (name.equals("spike-interval")) {
+        setSpikeInterval(Long.parseLong(value));
+      } else if (name.equals("spike-length")) {
+        setSpikeLength(Long.parseLong(value));
+      } else if (name.equals("spike-factor")) {
+        setSpikeFactor(Double.parseDouble(value));
+      } else if (name.equals("error-percent")) {
+        setErrorPercent(Double.parseDouble(value));
+      } else if (name.equals("generators")) {
+        setGenerators(Integer.parseInt(value));
+      } else if (name.equals("rate")) {
+        setRate(Double.parseDouble(value));
+      } else if (name.equals("summary-interval")) {
+        setSummaryInterval(Integer.parseInt(value));
+      } else if (name.equals("seed")) {
+        setSeed(Long.parseLong(value));
+      } else {
+        throw new IllegalArgumentException("--" + name);
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("--" + name + "=" + value);
+    }
+  }
+
+  /**
+   * @return the samples, generated as they are iterated over, in the order
+   *         the generators would log them
+   */
+  public Iterator<HttpSample> iterator() {
+    final Random random = new Random(seed);
+    // the clocks of the generators are up to a second apart
+    final double[] clocks = new double[generators];
+    for (int i = 0; i < generators; i++) {
+      clocks[i] = start + (i == 0 ? 0 : random.nextInt(1000));
+    }
+    final double interval = generators * 1000 / rate;
+    return new Iterator<HttpSample>() {
+
+      private int next;
+
+      public boolean hasNext() {
+        return next < samples;
+      }
+
+      public HttpSample next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        int generator = next++ % generators;
+        long time = (long) clocks[generator];
+        clocks[generator] += interval;
+        HttpSample sample = new HttpSample();
+        sample.setUri(getLabel(random.nextInt(labels)));
+        sample.setDate(new Date(time));
+        sample.setDuration(distribution.getDuration(WorkloadGenerator.this,
+            random, time));
+        sample.setSuccessful(random.nextDouble() * 100 >= errorPercent);
+        sample.setHttpCode(sample.isSuccessful() ? "200" : "500");
+        sample.setBytes(1000 + random.nextInt(9000));
+        return sample;
+      }
+
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  private static String getLabel(int index) {
+    return "/app/page" + index;
+  }
+
+  private long getLognormal(Random random, double median) {
+    return Math.max(Math.round(Math.exp(Math.log(median) + sigma
+        * random.nextGaussian())), 1);
+  }
+
+  /**
+   * @return the generator of a sample logged by the generator of the given
+   *         index, to name its threads and host
+   */
+  private static String getGeneratorName(int index) {
+    return "generator-" + (index + 1);
+  }
+
+  public void write(Format format, File file) throws IOException {
+    Writer out = new BufferedWriter(new OutputStreamWriter(
+        new FileOutputStream(file), "UTF-8"));
+    try {
+      write(format, out);
+    } finally {
+      out.close();
+    }
+  }
+
+  public void write(Format format, Writer out) throws IOException {
+    switch (format) {
+    case JTL_XML:
+      writeJMeterXml(out);
+      break;
+    case JTL_CSV:
+      writeJMeterCsv(out);
+      break;
+    case JUNIT:
+      writeJUnit(out);
+      break;
+    case SUMMARIZER:
+      writeSummarizer(out);
+      break;
+    }
+  }
+
+  private void writeJMeterXml(Writer out) throws IOException {
+    out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    out.write("<testResults version=\"1.2\">\n");
+    int index = 0;
+    for (HttpSample sample : this) {
+      String generator = getGeneratorName(index++ % generators);
+      out.write("<httpSample t=\"" + sample.getDuration() + "\" ts=\""
+          + sample.getDate().getTime() + "\" s=\"" + sample.isSuccessful()
+          + "\" lb=\"" + sample.getUri() + "\" rc=\"" + sample.getHttpCode()
+          + "\" by=\"" + sample.getBytes() + "\" tn=\"" + generator
+          + " 1-1\" hn=\"" + generator + "\"/>\n");
+    }
+    out.write("</testResults>\n");
+  }
+
+  private void writeJMeterCsv(Writer out) throws IOException {
+    out.write("timeStamp,elapsed,label,responseCode,responseMessage,"
+        + "threadName,success,bytes,hostname\n");
+    int index = 0;
+    for (HttpSample sample : this) {
+      String generator = getGeneratorName(index++ % generators);
+      out.write(sample.getDate().getTime() + "," + sample.getDuration() + ","
+          + sample.getUri() + "," + sample.getHttpCode() + ","
+          + (sample.isSuccessful() ? "OK" : "Internal Server Error") + ","
+          + generator + " 1-1," + sample.isSuccessful() + ","
+          + sample.getBytes() + "," + generator + "\n");
+    }
+  }
+
+  private void writeJUnit(Writer out) throws IOException {
+    out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n");
+    out.write("<testsuite name=\"Workload\" tests=\"" + samples + "\">\n");
+    for (HttpSample sample : this) {
+      out.write("  <testcase classname=\"Workload\" name=\"" + sample.getUri()
+          + "\" time=\"" + sample.getDuration() / 1000.0 + "\"");
+      if (sample.isSuccessful()) {
+        out.write("/>\n");
+      } else {
+        out.write("><failure message=\"" + sample.getHttpCode()
+            + "\"/></testcase>\n");
+      }
+    }
+    out.write("</testsuite>\n");
+  }
+
+  /**
+   * Writes the lines a summariser logs every {@link #summaryInterval}
+   * seconds: the results of the last interval, with a +, then of the whole
+   * run, with a =.
+   */
+  private void writeSummarizer(Writer out) throws IOException {
+    SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss",
+        Locale.ENGLISH);
+    dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    long intervalMillis = summaryInterval * 1000L;
+    long intervalStart = start;
+    long last = start;
+    long[] interval = newTotals();
+    long[] total = newTotals();
+    for (HttpSample sample : this) {
+      long time = sample.getDate().getTime();
+      while (time >= intervalStart + intervalMillis) {
+        writeSummary(out, dateFormat, intervalStart + intervalMillis,
+            intervalStart, interval, total);
+        interval = newTotals();
+        intervalStart += intervalMillis;
+      }
+      add(interval, sample);
+      add(total, sample);
+      last = Math.max(last, time + sample.getDuration());
+    }
+    writeSummary(out, dateFormat, Math.max(last, intervalStart + 1),
+        intervalStart, interval, total);
+  }
+
+  /**
+   * @return the count, errors, total, min and max durations of no samples
+   */
+  private static long[] newTotals() {
+    return new long[] { 0, 0, 0, Long.MAX_VALUE, 0 };
+  }
+
+  private static void add(long[] totals, HttpSample sample) {
+    totals[0]++;
+    if (!sample.isSuccessful()) {
+      totals[1]++;
+    }
+    totals[2] += sample.getDuration();
+    totals[3] = Math.min(totals[3], sample.getDuration());
+    totals[4] = Math.max(totals[4], sample.getDuration());
+  }
+
+  private void writeSummary(Writer out, SimpleDateFormat dateFormat,
+      long time, long intervalStart, long[] interval, long[] total)
+      throws IOException {
+    if (interval[0] == 0) {
+      return;
+    }
+    String prefix = dateFormat.format(new Date(time))
+        + " INFO  - jmeter.reporters.Summariser: Generate Summary Results ";
+    out.write(prefix + "+ " + formatSummary(interval, time - intervalStart)
+        + "\n");
+    out.write(prefix + "= " + formatSummary(total, time - start) + "\n");
+  }
+
+  private static String formatSummary(long[] totals, long millis) {
+    double seconds = millis / 1000.0;
+    return String.format(Locale.ENGLISH,
+        "%6d in %5.1fs = %6.1f/s Avg: %5d Min: %5d Max: %5d Err: %5d (%.2f%%)",
+        totals[0], seconds, totals[0] / seconds, totals[2] / totals[0],
+        totals[3], totals[4], totals[1], totals[1] * 100.0 / totals[0]);
+  }
+
+  public int getSamples() {
+    return samples;
+  }
+
+  public void setSamples(int samples) {
+    this.samples = Math.max(samples, 0);
+  }
+
+  public int getLabels() {
+    return labels;
+  }
+
+  public void setLabels(int labels) {
+    this.labels = Math.max(labels, 1);
+  }
+
+  public Distribution getDistribution() {
+    return distribution;
+  }
+
+  public void setDistribution(Distribution distribution) {
+    this.distribution = distribution;
+  }
+
+  public double getMedian() {
+    return median;
+  }
+
+  public void setMedian(double median) {
+    this.median = Math.max(median, 1);
+  }
+
+  public double getSigma() {
+    return sigma;
+  }
+
+  public void setSigma(double sigma) {
+    this.sigma = Math.max(sigma, 0);
+  }
+
+  public double getSlowPercent() {
+    return slowPercent;
+  }
+
+  public void setSlowPercent(double slowPercent) {
+    this.slowPercent = slowPercent;
+  }
+
+  public double getSlowFactor() {
+    return slowFactor;
+  }
+
+  public void setSlowFactor(double slowFactor) {
+    this.slowFactor = slowFactor;
+  }
+
+  public long getSpikeInterval() {
+    return spikeInterval;
+  }
+
+  public void setSpikeInterval(long spikeInterval) {
+    this.spikeInterval = Math.max(spikeInterval, 1);
+  }
+
+  public long getSpikeLength() {
+    return spikeLength;
+  }
+
+  public void setSpikeLength(long spikeLength) {
+    this.spikeLength = spikeLength;
+  }
+
+  public double getSpikeFactor() {
+    return spikeFactor;
+  }
+
+  public void setSpikeFactor(double spikeFactor) {
+    this.spikeFactor = spikeFactor;
+  }
+
+  public double getErrorPercent() {
+    return errorPercent;
+  }
+
+  public void setErrorPercent(double errorPercent) {
+    this.errorPercent = errorPercent;
+  }
+
+  public int getGenerators() {
+    return generators;
+  }
+
+  public void setGenerators(int generators) {
+    this.generators = Math.max(generators, 1);
+  }
+
+  public double getRate() {
+    return rate;
+  }
+
+  public void setRate(double rate) {
+    if (rate > 0) {
+      this.rate = rate;
+    }
+  }
+
+  public int getSummaryInterval() {
+    return summaryInterval;
+  }
+
+  public void setSummaryInterval(int summaryInterval) {
+    this.summaryInterval = Math.max(summaryInterval, 1);
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  public long getStart() {
+    return start;
+  }
+
+  public void setStart(long start) {
+    this.start = start;
+  }
+}
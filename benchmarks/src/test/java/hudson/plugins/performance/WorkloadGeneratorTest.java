@@ -0,0 +1,118 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import hudson.util.StreamTaskListener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringWriter;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+public class WorkloadGeneratorTest {
+
+	private WorkloadGenerator createGenerator() {
+		WorkloadGenerator generator = new WorkloadGenerator();
+		generator.setSamples(6000);
+		generator.setLabels(20);
+		generator.setGenerators(3);
+		generator.setErrorPercent(5);
+		return generator;
+	}
+
+	private PerformanceReport parse(PerformanceReportParser parser,
+			WorkloadGenerator.Format format) throws Exception {
+		File file = File.createTempFile("workload", ".tmp");
+		try {
+			createGenerator().write(format, file);
+			Collection<PerformanceReport> reports = parser.parse(null,
+					Collections.singleton(file), new StreamTaskListener(
+							new ByteArrayOutputStream()));
+			assertEquals(1, reports.size());
+			return reports.iterator().next();
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testReproducible() throws Exception {
+		StringWriter first = new StringWriter();
+		createGenerator().write(WorkloadGenerator.Format.JTL_CSV, first);
+		StringWriter second = new StringWriter();
+		createGenerator().write(WorkloadGenerator.Format.JTL_CSV, second);
+		assertEquals(first.toString(), second.toString());
+		assertEquals(6001, first.toString().split("\n").length);
+
+		WorkloadGenerator other = createGenerator();
+		other.setSeed(7);
+		StringWriter third = new StringWriter();
+		other.write(WorkloadGenerator.Format.JTL_CSV, third);
+		assertFalse(first.toString().equals(third.toString()));
+	}
+
+	@Test
+	public void testInterleavedGenerators() {
+		boolean outOfOrder = false;
+		long last = 0;
+		for (HttpSample sample : createGenerator()) {
+			long time = sample.getDate().getTime();
+			outOfOrder |= time < last;
+			last = time;
+		}
+		assertTrue(outOfOrder);
+		// 100 samples per second, for a minute
+		assertEquals(60, (last - createGenerator().getStart()) / 1000, 1);
+	}
+
+	@Test
+	public void testDistributions() {
+		WorkloadGenerator generator = createGenerator();
+		generator.setSamples(10000);
+		generator.setDistribution(WorkloadGenerator.Distribution.BIMODAL);
+		int slow = 0;
+		for (HttpSample sample : generator) {
+			if (sample.getDuration() > 1000) {
+				slow++;
+			}
+		}
+		// 10% around 2 s, and a few of the others
+		assertEquals(1000, slow, 150);
+
+		generator.setDistribution(WorkloadGenerator.Distribution.SPIKES);
+		Iterator<HttpSample> samples = generator.iterator();
+		long spike = 0;
+		long normal = 0;
+		for (int i = 0; i < 1000; i++) {
+			HttpSample sample = samples.next();
+			long offset = sample.getDate().getTime() - generator.getStart();
+			if (offset >= 1000 && offset < 4000) {
+				spike = Math.max(spike, sample.getDuration());
+			} else if (offset >= 6000) {
+				normal = Math.max(normal, sample.getDuration());
+			}
+		}
+		assertTrue(spike > 1000);
+		assertTrue(normal < 1000);
+	}
+
+	@Test
+	public void testParsers() throws Exception {
+		PerformanceReport report = parse(new JMeterParser(""),
+				WorkloadGenerator.Format.JTL_XML);
+		assertEquals(6000, report.size());
+		assertEquals(20, report.getUriReportMap().size());
+
+		report = parse(new JUnitParser(""), WorkloadGenerator.Format.JUNIT);
+		assertEquals(6000, report.size());
+
+		// a line for the whole run every 30 seconds, and at the end
+		report = parse(new JmeterSummarizerParser(""),
+				WorkloadGenerator.Format.SUMMARIZER);
+		assertEquals(3, report.size());
+	}
+}
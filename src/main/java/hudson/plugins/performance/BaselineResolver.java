@@ -0,0 +1,89 @@
+package hudson.plugins.performance;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Result;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Resolves the build whose reports a build is compared against, either the
+ * closest previous build that recorded performance reports or an explicitly
+ * chosen one.
+ *
+ * The comparison only needs the {@link PerformanceReportSummary}s of the
+ * baseline, so resolving it never loads the baseline's report map when the
+ * summaries were stored at publish time. Instances hold no shared state and can
+ * be used from concurrent requests.
+ */
+public class BaselineResolver {
+
+  private final AbstractBuild<?, ?> build;
+
+  /**
+   * Number of the build to compare against, or 0 for the previous build.
+   */
+  private final int baselineBuildNumber;
+
+  /**
+   * Whether only successful previous builds can be the baseline.
+   */
+  private final boolean successfulOnly;
+
+  public BaselineResolver(AbstractBuild<?, ?> build) {
+    this(build, 0);
+  }
+
+  public BaselineResolver(AbstractBuild<?, ?> build, int baselineBuildNumber) {
+    this(build, baselineBuildNumber, false);
+  }
+
+  /**
+   * @param successfulOnly
+   *            whether the previous build is rather the closest one that
+   *            succeeded, when no build is explicitly chosen
+   */
+  public BaselineResolver(AbstractBuild<?, ?> build, int baselineBuildNumber,
+      boolean successfulOnly) {
+    this.build = build;
+    this.baselineBuildNumber = baselineBuildNumber;
+    this.successfulOnly = successfulOnly;
+  }
+
+  /**
+   * @return the baseline build, or null if there is none with performance
+   *         reports
+   */
+  public AbstractBuild<?, ?> getBaselineBuild() {
+    if (baselineBuildNumber > 0) {
+      AbstractBuild<?, ?> baseline = build.getProject().getBuildByNumber(
+          baselineBuildNumber);
+      if (baseline == null || baseline == build
+          || baseline.getAction(PerformanceBuildAction.class) == null) {
+        return null;
+      }
+      return baseline;
+    }
+    for (AbstractBuild<?, ?> previousBuild = build.getPreviousBuild(); previousBuild != null; previousBuild = previousBuild.getPreviousBuild()) {
+      if (successfulOnly && previousBuild.getResult() != Result.SUCCESS) {
+        continue;
+      }
+      if (previousBuild.getAction(PerformanceBuildAction.class) != null) {
+        return previousBuild;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the summaries of the baseline keyed by report file name, empty if
+   *         there is no baseline
+   */
+  public Map<String, PerformanceReportSummary> getSummaries() {
+    AbstractBuild<?, ?> baseline = getBaselineBuild();
+    if (baseline == null) {
+      return Collections.emptyMap();
+    }
+    return baseline.getAction(PerformanceBuildAction.class).getSummaries();
+  }
+}
@@ -0,0 +1,127 @@
+package hudson.plugins.performance;
+
+import hudson.model.AbstractBuild;
+import hudson.util.DaemonThreadFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Loads the reports of several builds on a bounded pool of worker threads.
+ *
+ * Trends of builds whose reports have to be parsed would otherwise parse them
+ * one at a time on the request thread. A request waits at most
+ * {@link #TIMEOUT} milliseconds: the builds that are not loaded by then are
+ * left out, so that the page shows partial data rather than hanging.
+ */
+public class BuildReportLoader {
+
+  /**
+   * Loads something from one build.
+   */
+  public interface Task<T> {
+
+    /**
+     * @return what was loaded, may be null
+     */
+    T load(AbstractBuild<?, ?> build) throws Exception;
+  }
+
+  /**
+   * Number of builds loaded at the same time.
+   */
+  static final int THREADS = Integer.getInteger(
+      BuildReportLoader.class.getName() + ".threads", 4);
+
+  private static final long TIMEOUT = Long.getLong(
+      BuildReportLoader.class.getName() + ".timeout", 20 * 1000);
+
+  private static final Logger LOGGER = Logger.getLogger(BuildReportLoader.class.getName());
+
+  private static ExecutorService executor;
+
+  private BuildReportLoader() {
+  }
+
+  private static synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      executor = Executors.newFixedThreadPool(THREADS,
+          new DaemonThreadFactory());
+    }
+    return executor;
+  }
+
+  /**
+   * Runs a task for each of the given builds, in parallel, and waits for them
+   * until the deadline of the request.
+   *
+   * @return what was loaded from each build, in the order of the builds. Builds
+   *         that were not loaded in time, or failed to load, have no entry.
+   */
+  public static <T> Map<AbstractBuild<?, ?>, T> load(
+      List<? extends AbstractBuild<?, ?>> builds, final Task<T> task) {
+    Map<AbstractBuild<?, ?>, T> loaded = new LinkedHashMap<AbstractBuild<?, ?>, T>();
+    if (builds.isEmpty()) {
+      return loaded;
+    }
+    if (builds.size() == 1) {
+      // not worth a thread switch
+      AbstractBuild<?, ?> build = builds.get(0);
+      try {
+        loaded.put(build, task.load(build));
+      } catch (Exception e) {
+        LOGGER.log(Level.WARNING, "Failed to load the performance reports of "
+            + build, e);
+      }
+      return loaded;
+    }
+
+    List<Callable<T>> tasks = new ArrayList<Callable<T>>(builds.size());
+    for (final AbstractBuild<?, ?> build : builds) {
+      tasks.add(new Callable<T>() {
+
+        public T call() throws Exception {
+          return task.load(build);
+        }
+      });
+    }
+    List<Future<T>> futures;
+    try {
+      futures = getExecutor().invokeAll(tasks, TIMEOUT, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return loaded;
+    }
+    int missing = 0;
+    for (int i = 0; i < futures.size(); i++) {
+      AbstractBuild<?, ?> build = builds.get(i);
+      try {
+        loaded.put(build, futures.get(i).get());
+      } catch (CancellationException e) {
+        missing++;
+      } catch (ExecutionException e) {
+        LOGGER.log(Level.WARNING, "Failed to load the performance reports of "
+            + build, e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return loaded;
+      }
+    }
+    if (missing > 0) {
+      LOGGER.log(Level.INFO, missing + " of " + builds.size()
+          + " builds were not loaded within " + TIMEOUT + " ms");
+    }
+    return loaded;
+  }
+}
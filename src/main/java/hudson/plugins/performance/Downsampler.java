@@ -0,0 +1,81 @@
+package hudson.plugins.performance;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling of a series of values.
+ *
+ * Picks the points that best keep the visual shape of the series: the first
+ * and last points are kept, the others are split into buckets, and from each
+ * bucket the point forming the largest triangle with the point kept from the
+ * previous bucket and the average of the next bucket is kept. Spikes therefore
+ * survive downsampling, unlike with plain averaging or striding.
+ */
+public class Downsampler {
+
+  private Downsampler() {
+  }
+
+  /**
+   * Selects at most <code>threshold</code> of the given values.
+   *
+   * @param values
+   *            the values, equally spaced
+   * @param threshold
+   *            the number of values to keep
+   * @return the indexes of the values to keep, in increasing order. All the
+   *         indexes if there are no more values than the threshold, or if the
+   *         threshold is lower than 3.
+   */
+  public static int[] largestTriangleThreeBuckets(double[] values,
+      int threshold) {
+    int length = values.length;
+    if (threshold >= length || threshold < 3) {
+      int[] all = new int[length];
+      for (int i = 0; i < length; i++) {
+        all[i] = i;
+      }
+      return all;
+    }
+
+    int[] selected = new int[threshold];
+    int count = 0;
+    // the first and last points are always kept
+    double bucketSize = (double) (length - 2) / (threshold - 2);
+    int a = 0;
+    selected[count++] = a;
+
+    for (int bucket = 0; bucket < threshold - 2; bucket++) {
+      // average of the next bucket, the last point for the last bucket
+      int nextStart = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+      int nextEnd = Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1,
+          length);
+      double avgX = 0;
+      double avgY = 0;
+      for (int i = nextStart; i < nextEnd; i++) {
+        avgX += i;
+        avgY += values[i];
+      }
+      int nextLength = nextEnd - nextStart;
+      avgX /= nextLength;
+      avgY /= nextLength;
+
+      int start = (int) Math.floor(bucket * bucketSize) + 1;
+      int end = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+      double maxArea = -1;
+      int maxIndex = start;
+      for (int i = start; i < end; i++) {
+        // twice the area of the triangle, which compares the same
+        double area = Math.abs((a - avgX) * (values[i] - values[a])
+            - (a - i) * (avgY - values[a]));
+        if (area > maxArea) {
+          maxArea = area;
+          maxIndex = i;
+        }
+      }
+      selected[count++] = maxIndex;
+      a = maxIndex;
+    }
+
+    selected[count] = length - 1;
+    return selected;
+  }
+}
@@ -221,6 +221,14 @@ public class GraphConfigurationDetail implements ModelObject {
         + SEPARATOR + lastDayCount + SEPARATOR + buildStep;
   }
 
+  /**
+   * @return the current configuration in the format it is persisted in
+   */
+  public String getValue() {
+    return serializeToString(configType, buildCount, firstDayCount,
+        lastDayCount, buildStep);
+  }
+
   /**
    * Creates a file with for the default values.
    * 
@@ -0,0 +1,110 @@
+package hudson.plugins.performance;
+
+import hudson.XmlFile;
+import hudson.model.Hudson;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The {@link LatencyHistogram}s of the URIs of a build, saved in a file of
+ * their own in the build directory.
+ *
+ * Hudson keeps every build record in memory once loaded, so the histograms
+ * are left out of build.xml: they are read from their file when first
+ * needed, and softly held so they can be read again under memory pressure.
+ */
+public class HistogramFile {
+
+  private static final String FILE = "performance-histograms.xml";
+
+  private static final Logger LOGGER = Logger.getLogger(HistogramFile.class.getName());
+
+  private final File buildDir;
+
+  /**
+   * Histograms keyed by {@link UriReport#getStaplerUri()}, keyed by report
+   * file name.
+   */
+  private Reference<Map<String, Map<String, LatencyHistogram>>> histograms;
+
+  HistogramFile(File buildDir) {
+    this.buildDir = buildDir;
+  }
+
+  private XmlFile getFile() {
+    return new XmlFile(Hudson.XSTREAM, new File(buildDir, FILE));
+  }
+
+  /**
+   * @return the histogram of a URI of a report, or null if it wasn't recorded
+   */
+  synchronized LatencyHistogram get(String reportFileName, String staplerUri) {
+    Map<String, Map<String, LatencyHistogram>> reports = histograms == null ? null
+        : histograms.get();
+    PerformanceDiagnostics.lookup("Histograms", reports != null);
+    if (reports == null) {
+      reports = load();
+      histograms = new SoftReference<Map<String, Map<String, LatencyHistogram>>>(
+          reports);
+    }
+    Map<String, LatencyHistogram> uris = reports.get(reportFileName);
+    return uris == null ? null : uris.get(staplerUri);
+  }
+
+  @SuppressWarnings("unchecked")
+  private Map<String, Map<String, LatencyHistogram>> load() {
+    XmlFile file = getFile();
+    if (file.exists()) {
+      try {
+        return (Map<String, Map<String, LatencyHistogram>>) file.read();
+      } catch (IOException e) {
+        LOGGER.log(Level.WARNING, "Failed to read " + file, e);
+      }
+    }
+    // builds recorded by older versions of the plugin have no histograms
+    return new HashMap<String, Map<String, LatencyHistogram>>();
+  }
+
+  /**
+   * Saves the histograms the summaries were made with, and lets the summaries
+   * read them from here from now on.
+   */
+  synchronized void save(Map<String, PerformanceReportSummary> summaries) {
+    Map<String, Map<String, LatencyHistogram>> reports = new HashMap<String, Map<String, LatencyHistogram>>();
+    for (PerformanceReportSummary summary : summaries.values()) {
+      Map<String, LatencyHistogram> uris = new HashMap<String, LatencyHistogram>();
+      for (UriReportSummary uriSummary : summary.getUriSummaries()) {
+        LatencyHistogram histogram = uriSummary.getHistogram();
+        if (histogram != null) {
+          uris.put(uriSummary.getStaplerUri(), histogram);
+        }
+      }
+      reports.put(summary.getReportFileName(), uris);
+    }
+    try {
+      getFile().write(reports);
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Failed to save the latency histograms in "
+          + buildDir, e);
+    }
+    histograms = new SoftReference<Map<String, Map<String, LatencyHistogram>>>(
+        reports);
+    attach(summaries);
+  }
+
+  /**
+   * Lets the summaries read their histograms from here.
+   */
+  void attach(Map<String, PerformanceReportSummary> summaries) {
+    for (PerformanceReportSummary summary : summaries.values()) {
+      summary.setHistogramFile(this);
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package hudson.plugins.performance;
+
+/**
+ * Mann-Whitney U test between the durations of a build and of its baseline,
+ * telling whether a difference of their averages or medians is more than
+ * noise.
+ *
+ * The test runs on {@link LatencyHistogram}s, each bucket being a group of
+ * tied durations, so its cost depends on the number of buckets rather than on
+ * the number of samples.
+ */
+public class LatencyComparison {
+
+  /**
+   * Highest p-value of a significant change.
+   */
+  static final double SIGNIFICANCE = Double.parseDouble(System.getProperty(
+      LatencyComparison.class.getName() + ".significance", "0.01"));
+
+  /**
+   * Lowest effect size of a significant change, so that tiny shifts aren't
+   * flagged on runs with millions of samples.
+   */
+  static final double MIN_EFFECT_SIZE = Double.parseDouble(System.getProperty(
+      LatencyComparison.class.getName() + ".minEffectSize", "0.1"));
+
+  /**
+   * Two-sided p-value of the test.
+   */
+  private final double pValue;
+
+  /**
+   * Rank-biserial correlation, between -1 when all the durations are lower
+   * than the baseline's and 1 when they are all higher.
+   */
+  private final double effectSize;
+
+  LatencyComparison(double pValue, double effectSize) {
+    this.pValue = pValue;
+    this.effectSize = effectSize;
+  }
+
+  /**
+   * Compares the durations of a build with the durations of its baseline.
+   *
+   * @return the comparison, or null if either histogram is empty
+   */
+  public static LatencyComparison compare(LatencyHistogram histogram,
+      LatencyHistogram baseline) {
+    double n1 = histogram.getCount();
+    double n2 = baseline.getCount();
+    if (n1 == 0 || n2 == 0) {
+      return null;
+    }
+    int[] buckets1 = histogram.getBuckets();
+    int[] counts1 = histogram.getCounts();
+    int[] buckets2 = baseline.getBuckets();
+    int[] counts2 = baseline.getCounts();
+
+    // walk the buckets of both histograms in increasing order, counting for
+    // each duration of the build the baseline durations below it
+    double u = 0;
+    double ties = 0;
+    double baselineBelow = 0;
+    int i = 0;
+    int j = 0;
+    while (i < buckets1.length || j < buckets2.length) {
+      int bucket = Math.min(i < buckets1.length ? buckets1[i]
+          : Integer.MAX_VALUE, j < buckets2.length ? buckets2[j]
+          : Integer.MAX_VALUE);
+      double c1 = 0;
+      double c2 = 0;
+      if (i < buckets1.length && buckets1[i] == bucket) {
+        c1 = counts1[i++];
+      }
+      if (j < buckets2.length && buckets2[j] == bucket) {
+        c2 = counts2[j++];
+      }
+      u += c1 * (baselineBelow + c2 / 2);
+      double tied = c1 + c2;
+      ties += tied * tied * tied - tied;
+      baselineBelow += c2;
+    }
+
+    double n = n1 + n2;
+    double mean = n1 * n2 / 2;
+    double variance = n1 * n2 / 12 * ((n + 1) - ties / (n * (n - 1)));
+    double effectSize = 2 * u / (n1 * n2) - 1;
+    if (variance <= 0) {
+      // all the durations are in the same bucket
+      return new LatencyComparison(1, effectSize);
+    }
+    double z = Math.max(Math.abs(u - mean) - 0.5, 0) / Math.sqrt(variance);
+    return new LatencyComparison(erfc(z / Math.sqrt(2)), effectSize);
+  }
+
+  /**
+   * Complementary error function, with a fractional error below 1.2e-7
+   * (Numerical Recipes, 6.2).
+   */
+  static double erfc(double x) {
+    double z = Math.abs(x);
+    double t = 1 / (1 + z / 2);
+    double result = t
+        * Math.exp(-z * z - 1.26551223 + t
+            * (1.00002368 + t
+                * (0.37409196 + t
+                    * (0.09678418 + t
+                        * (-0.18628806 + t
+                            * (0.27886807 + t
+                                * (-1.13520398 + t
+                                    * (1.48851587 + t
+                                        * (-0.82215223 + t * 0.17087277)))))))));
+    return x >= 0 ? result : 2 - result;
+  }
+
+  public double getPValue() {
+    return pValue;
+  }
+
+  public double getEffectSize() {
+    return effectSize;
+  }
+
+  public boolean isSignificant() {
+    return pValue < SIGNIFICANCE && Math.abs(effectSize) >= MIN_EFFECT_SIZE;
+  }
+
+  /**
+   * @return whether the durations are significantly higher than the
+   *         baseline's
+   */
+  public boolean isSignificantRegression() {
+    return isSignificant() && effectSize > 0;
+  }
+
+  /**
+   * @return whether the durations are significantly lower than the baseline's
+   */
+  public boolean isSignificantImprovement() {
+    return isSignificant() && effectSize < 0;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("p=%.4f, effect size=%.2f", pValue, effectSize);
+  }
+}
@@ -0,0 +1,237 @@
+package hudson.plugins.performance;
+
+import java.util.Collection;
+
+/**
+ * Compact distribution of durations, saved with the build in its
+ * {@link HistogramFile} so that builds can be compared beyond their
+ * aggregates without parsing their reports again.
+ *
+ * Durations below {@link #SUB_BUCKETS} milliseconds have a bucket each, and
+ * every power of two above is split into {@link #SUB_BUCKETS} buckets of equal
+ * width, so the value of any percentile is known within about 6%. Only the
+ * buckets holding durations are kept.
+ */
+public class LatencyHistogram {
+
+  static final int SUB_BUCKETS = 16;
+
+  private static final int SUB_BUCKET_BITS = 4;
+
+  /**
+   * Indexes of the non-empty buckets, in increasing order.
+   */
+  private final int[] buckets;
+
+  /**
+   * Number of durations in each of {@link #buckets}.
+   */
+  private final int[] counts;
+
+  private final long count;
+
+  public LatencyHistogram(long[] durations) {
+    this(durations, 0, durations.length);
+  }
+
+  /**
+   * @return the distribution of the durations between the given indexes, the
+   *         last excluded
+   */
+  LatencyHistogram(long[] durations, int from, int to) {
+    this(countDurations(durations, from, to), to - from);
+  }
+
+  /**
+   * @param dense
+   *            number of durations of every bucket
+   */
+  LatencyHistogram(int[] dense, long count) {
+    int used = 0;
+    for (int c : dense) {
+      if (c != 0) {
+        used++;
+      }
+    }
+    buckets = new int[used];
+    counts = new int[used];
+    int i = 0;
+    for (int bucket = 0; bucket < dense.length; bucket++) {
+      if (dense[bucket] != 0) {
+        buckets[i] = bucket;
+        counts[i] = dense[bucket];
+        i++;
+      }
+    }
+    this.count = count;
+  }
+
+  /**
+   * @param buckets
+   *            indexes of the non-empty buckets, in increasing order
+   * @param counts
+   *            number of durations in each of these buckets
+   */
+  LatencyHistogram(int[] buckets, int[] counts, long count) {
+    this.buckets = buckets;
+    this.counts = counts;
+    this.count = count;
+  }
+
+  private static int[] countDurations(long[] durations, int from, int to) {
+    int[] dense = new int[SUB_BUCKETS];
+    for (int i = from; i < to; i++) {
+      int bucket = bucketOf(durations[i]);
+      if (bucket >= dense.length) {
+        dense = grow(dense, bucket + 1);
+      }
+      dense[bucket]++;
+    }
+    return dense;
+  }
+
+  static int[] grow(int[] dense, int length) {
+    int[] grown = new int[Math.max(length, dense.length * 2)];
+    System.arraycopy(dense, 0, grown, 0, dense.length);
+    return grown;
+  }
+
+  /**
+   * @return the distribution of all the durations of the given histograms
+   */
+  public static LatencyHistogram merge(Collection<LatencyHistogram> histograms) {
+    int[] dense = new int[SUB_BUCKETS];
+    long count = 0;
+    for (LatencyHistogram histogram : histograms) {
+      for (int i = 0; i < histogram.buckets.length; i++) {
+        if (histogram.buckets[i] >= dense.length) {
+          dense = grow(dense, histogram.buckets[i] + 1);
+        }
+        dense[histogram.buckets[i]] += histogram.counts[i];
+      }
+      count += histogram.count;
+    }
+    return new LatencyHistogram(dense, count);
+  }
+
+  /**
+   * @return the index of the bucket of a duration, negative durations being
+   *         counted as 0
+   */
+  static int bucketOf(long duration) {
+    if (duration < SUB_BUCKETS) {
+      return (int) Math.max(duration, 0);
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(duration);
+    int shift = exponent - SUB_BUCKET_BITS;
+    int subBucket = (int) (duration >> shift) - SUB_BUCKETS;
+    return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * @return the lowest duration of a bucket
+   */
+  static long lowerBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+    int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+    return (long) (SUB_BUCKETS + subBucket) << shift;
+  }
+
+  /**
+   * @return the highest duration of a bucket
+   */
+  static long upperBound(int bucket) {
+    return lowerBound(bucket + 1) - 1;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  /**
+   * @param percent
+   *            between 0 and 100
+   * @return the highest duration of the bucket holding the given percentile,
+   *         0 if the histogram is empty
+   */
+  public long getValueAtPercentile(double percent) {
+    if (count == 0) {
+      return 0;
+    }
+    // same rank as UriReport#get90Line() and the other lines
+    long rank = Math.min((long) (count * percent / 100), count - 1);
+    long seen = 0;
+    for (int i = 0; i < buckets.length; i++) {
+      seen += counts[i];
+      if (seen > rank) {
+        return upperBound(buckets[i]);
+      }
+    }
+    return upperBound(buckets[buckets.length - 1]);
+  }
+
+  /**
+   * @return the number of durations in buckets entirely above the given
+   *         duration
+   */
+  public long countAbove(long duration) {
+    int limit = bucketOf(duration);
+    long above = 0;
+    for (int i = buckets.length - 1; i >= 0 && buckets[i] > limit; i--) {
+      above += counts[i];
+    }
+    return above;
+  }
+
+  /**
+   * Adds the durations of this histogram to, or removes them from, the counts
+   * of every bucket.
+   *
+   * @param dense
+   *            counts of every bucket, at least up to {@link #getMaxBucket()}
+   * @param sign
+   *            1 to add the durations, -1 to remove them
+   */
+  void addTo(int[] dense, int sign) {
+    for (int i = 0; i < buckets.length; i++) {
+      dense[buckets[i]] += sign * counts[i];
+    }
+  }
+
+  /**
+   * @return the index of the highest non-empty bucket, -1 if there is none
+   */
+  int getMaxBucket() {
+    return buckets.length == 0 ? -1 : buckets[buckets.length - 1];
+  }
+
+  /**
+   * Same as {@link #getValueAtPercentile(double)} on the counts of every
+   * bucket.
+   */
+  static long getValueAtPercentile(int[] dense, long count, double percent) {
+    if (count == 0) {
+      return 0;
+    }
+    long rank = Math.min((long) (count * percent / 100), count - 1);
+    long seen = 0;
+    for (int bucket = 0; bucket < dense.length; bucket++) {
+      seen += dense[bucket];
+      if (seen > rank) {
+        return upperBound(bucket);
+      }
+    }
+    return upperBound(dense.length - 1);
+  }
+
+  int[] getBuckets() {
+    return buckets;
+  }
+
+  int[] getCounts() {
+    return counts;
+  }
+}
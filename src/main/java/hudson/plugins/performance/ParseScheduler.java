@@ -0,0 +1,180 @@
+package hudson.plugins.performance;
+
+import hudson.model.AbstractBuild;
+import hudson.model.Hudson;
+import hudson.model.TaskListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Limits how many reports are parsed at the same time on the master, and how
+ * much memory those parses may use together.
+ *
+ * Parses wait in first-in first-out order for a slot of their lane, then for
+ * a reservation of the memory they are expected to use. Publishing and page
+ * views have separate lanes, so that builds finishing together don't keep
+ * pages waiting and the other way round.
+ */
+public class ParseScheduler {
+
+  /**
+   * What a parse is for.
+   */
+  public enum Lane {
+    /**
+     * Parses of the reports of a build being published.
+     */
+    PUBLISH,
+    /**
+     * Parses of the reports of a past build, to show them.
+     */
+    VIEW
+  }
+
+  /**
+   * Estimated heap used while parsing a report, per byte of the report file.
+   */
+  static final int MEMORY_PER_BYTE = 2;
+
+  private static final Logger LOGGER = Logger.getLogger(ParseScheduler.class.getName());
+
+  private static Semaphore publishSlots;
+
+  private static Semaphore viewSlots;
+
+  /**
+   * Megabytes parses may reserve, null if not limited.
+   */
+  private static Semaphore memory;
+
+  private static int memorySize;
+
+  private ParseScheduler() {
+  }
+
+  /**
+   * Sets the limits of later parses. Parses already waiting or running keep
+   * the limits they started with.
+   *
+   * @param memorySize
+   *            megabytes all parses may reserve together, 0 for no limit
+   */
+  static synchronized void configure(int publishSlotCount, int viewSlotCount,
+      int memorySize) {
+    publishSlots = new Semaphore(Math.max(publishSlotCount, 1), true);
+    viewSlots = new Semaphore(Math.max(viewSlotCount, 1), true);
+    ParseScheduler.memorySize = Math.max(memorySize, 0);
+    memory = memorySize > 0 ? new Semaphore(memorySize, true) : null;
+  }
+
+  private static synchronized void init() {
+    if (publishSlots != null) {
+      return;
+    }
+    Hudson hudson = Hudson.getInstance();
+    PerformancePublisher.DescriptorImpl descriptor = hudson == null ? null
+        : hudson.getDescriptorByType(PerformancePublisher.DescriptorImpl.class);
+    if (descriptor == null) {
+      configure(PerformancePublisher.DescriptorImpl.DEFAULT_PARSE_SLOTS,
+          PerformancePublisher.DescriptorImpl.DEFAULT_VIEW_PARSE_SLOTS, 0);
+    } else {
+      configure(descriptor.getParseSlots(), descriptor.getViewParseSlots(),
+          descriptor.getParseMemory());
+    }
+  }
+
+  /**
+   * @return the megabytes a parse of the given files is expected to use, at
+   *         most the memory parses may reserve together
+   */
+  static int getReservation(Collection<File> reports, int memorySize) {
+    long bytes = 0;
+    for (File report : reports) {
+      bytes += report.length();
+    }
+    long megabytes = bytes * MEMORY_PER_BYTE / (1024 * 1024) + 1;
+    // parses can't keep more samples together than the heap budget
+    long maxSamples = SampleBudget.getMaxSamples();
+    if (maxSamples != Long.MAX_VALUE) {
+      megabytes = Math.min(megabytes, maxSamples * SampleBudget.SAMPLE_SIZE
+          / (1024 * 1024) + 1);
+    }
+    return (int) Math.min(megabytes, memorySize);
+  }
+
+  /**
+   * Parses reports once a slot of the given lane and their memory reservation
+   * are available. Parses for publishing say in the console how long they
+   * waited.
+   *
+   * @param timings
+   *            the timings of the build being published, or null
+   */
+  public static Collection<PerformanceReport> parse(Lane lane,
+      PerformanceReportParser parser, AbstractBuild<?, ?> build,
+      Collection<File> reports, TaskListener listener,
+      PerformanceDiagnostics.Timings timings) throws IOException,
+      InterruptedException {
+    Semaphore slots;
+    Semaphore reserved;
+    int reservation;
+    synchronized (ParseScheduler.class) {
+      init();
+      slots = lane == Lane.PUBLISH ? publishSlots : viewSlots;
+      reserved = memory;
+      reservation = reserved == null ? 0 : getReservation(reports, memorySize);
+    }
+
+    long start = System.currentTimeMillis();
+    int queued = slots.getQueueLength();
+    slots.acquire();
+    try {
+      if (reserved != null) {
+        reserved.acquire(reservation);
+      }
+      try {
+        long waited = System.currentTimeMillis() - start;
+        if (lane == Lane.PUBLISH) {
+          listener.getLogger().println("Performance: Parsing "
+              + parser.getReportName() + " reports after waiting " + waited
+              + " ms in the parse queue behind " + queued + " parses"
+              + (reserved == null ? "" : ", with " + reservation
+                  + " MB reserved"));
+        } else if (LOGGER.isLoggable(Level.FINE)) {
+          LOGGER.fine("Parsing " + parser.getReportName() + " reports of "
+              + build + " after waiting " + waited + " ms");
+        }
+        long parseStart = PerformanceDiagnostics.start();
+        Collection<PerformanceReport> parsed;
+        SampleBudget.begin();
+        try {
+          parsed = parser.parse(build, reports, listener);
+        } finally {
+          SampleBudget.end();
+        }
+        long samples = 0;
+        for (PerformanceReport report : parsed) {
+          samples += report.size();
+        }
+        long bytes = 0;
+        for (File report : reports) {
+          bytes += report.length();
+        }
+        PerformanceDiagnostics.record("Parse " + parser.getReportName()
+            + " reports", parseStart, samples, bytes, timings);
+        return parsed;
+      } finally {
+        if (reserved != null) {
+          reserved.release(reservation);
+        }
+      }
+    } finally {
+      slots.release();
+    }
+  }
+}
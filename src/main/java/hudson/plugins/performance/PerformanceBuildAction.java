@@ -9,8 +9,11 @@ import org.kohsuke.stapler.StaplerProxy;
 
 import java.io.IOException;
 import java.io.PrintStream;
-import java.lang.ref.WeakReference;
+import java.lang.ref.Reference;
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class PerformanceBuildAction implements Action, StaplerProxy {
   private final AbstractBuild<?, ?> build;
@@ -21,9 +24,38 @@ public class PerformanceBuildAction implements Action, StaplerProxy {
    */
   private final List<PerformanceReportParser> parsers;
 
+  /**
+   * Aggregates of the reports of this build keyed by report file name, written
+   * at publish time. Null for builds recorded by older versions of the plugin
+   * until they are first needed.
+   */
+  private volatile Map<String, PerformanceReportSummary> summaries;
+
+  /**
+   * Outcomes of the per URI thresholds at publish time, null if none were
+   * configured.
+   */
+  private List<UriThreshold.Outcome> thresholdOutcomes;
+
   private transient final PrintStream hudsonConsoleWriter;
 
-  private transient WeakReference<PerformanceReportMap> performanceReportMap;
+  /**
+   * Latency histograms of the URIs of the summaries, kept out of build.xml.
+   */
+  private transient HistogramFile histogramFile;
+
+  /**
+   * Whether the summaries read their histograms from {@link #histogramFile}.
+   */
+  private transient volatile boolean histogramsAttached;
+
+  /**
+   * Parsed reports of this build. Seeded by {@link PerformancePublisher} at
+   * publish time so the first view doesn't have to parse the reports again,
+   * and softly held so the reports can be reloaded from disk under memory
+   * pressure.
+   */
+  private transient Reference<PerformanceReportMap> performanceReportMap;
 
   private static final Logger logger = Logger.getLogger(PerformanceBuildAction.class.getName());
 
@@ -68,26 +100,157 @@ public class PerformanceBuildAction implements Action, StaplerProxy {
 
   public PerformanceReportMap getPerformanceReportMap() {
     PerformanceReportMap reportMap = null;
-    WeakReference<PerformanceReportMap> wr = this.performanceReportMap;
+    Reference<PerformanceReportMap> wr = this.performanceReportMap;
     if (wr != null) {
       reportMap = wr.get();
-      if (reportMap != null)
+      if (reportMap != null) {
+        PerformanceDiagnostics.lookup("Report maps", true);
         return reportMap;
+      }
     }
+    PerformanceDiagnostics.lookup("Report maps", false);
 
+    long start = PerformanceDiagnostics.start();
     try {
       reportMap = new PerformanceReportMap(this, new StreamTaskListener(
           System.err));
     } catch (IOException e) {
       logger.log(Level.SEVERE, "Error creating new PerformanceReportMap()", e);
     }
-    this.performanceReportMap = new WeakReference<PerformanceReportMap>(
+    PerformanceDiagnostics.record("Load report map", start);
+    this.performanceReportMap = new SoftReference<PerformanceReportMap>(
         reportMap);
     return reportMap;
   }
 
+  /**
+   * Gets the {@link PerformanceReportSummary}s of this build. Builds recorded
+   * by older versions of the plugin have their reports parsed once, and the
+   * resulting summaries are saved with the build.
+   */
+  public Map<String, PerformanceReportSummary> getSummaries() {
+    Map<String, PerformanceReportSummary> result = summaries;
+    if (result != null) {
+      if (!histogramsAttached) {
+        attachHistograms(result);
+      }
+      return result;
+    }
+    return convertSummaries();
+  }
+
+  private synchronized void attachHistograms(
+      Map<String, PerformanceReportSummary> summaries) {
+    if (!histogramsAttached) {
+      getHistogramFile().attach(summaries);
+      histogramsAttached = true;
+    }
+  }
+
+  private synchronized HistogramFile getHistogramFile() {
+    if (histogramFile == null) {
+      histogramFile = new HistogramFile(build.getRootDir());
+    }
+    return histogramFile;
+  }
+
+  /**
+   * Parses the reports of a build recorded by an older version of the plugin
+   * into summaries, once even if several pages ask for them at the same time.
+   */
+  private synchronized Map<String, PerformanceReportSummary> convertSummaries() {
+    Map<String, PerformanceReportSummary> result = summaries;
+    if (result != null) {
+      return result;
+    }
+    PerformanceReportMap reportMap = getPerformanceReportMap();
+    if (reportMap == null) {
+      return new LinkedHashMap<String, PerformanceReportSummary>();
+    }
+    result = new LinkedHashMap<String, PerformanceReportSummary>();
+    for (PerformanceReport report : reportMap.getPerformanceListOrdered()) {
+      result.put(report.getReportFileName(), new PerformanceReportSummary(
+          report));
+    }
+    getHistogramFile().save(result);
+    histogramsAttached = true;
+    summaries = result;
+    saveSummaries();
+    PerformanceCatalog.get(build.getProject()).record(build, result.values());
+    return result;
+  }
+
+  /**
+   * Gets the {@link PerformanceReportSummary}s of this build with their
+   * differences to the baseline build, as resolved by {@link BaselineResolver}.
+   */
+  public Map<String, PerformanceReportSummary> getComparedSummaries() {
+    compareWithBaseline();
+    return getSummaries();
+  }
+
+  /**
+   * Computes the differences of the summaries to the baseline build, unless
+   * that was already done when they were written.
+   */
+  synchronized void compareWithBaseline() {
+    Map<String, PerformanceReportSummary> baseline = null;
+    for (PerformanceReportSummary summary : getSummaries().values()) {
+      if (!summary.isCompared()) {
+        if (baseline == null) {
+          baseline = new BaselineResolver(build).getSummaries();
+        }
+        summary.compareWith(baseline.get(summary.getReportFileName()));
+      }
+    }
+    if (baseline != null) {
+      saveSummaries();
+    }
+  }
+
+  private void saveSummaries() {
+    // while building, the summaries are saved along with the build.
+    if (build.isBuilding()) {
+      return;
+    }
+    try {
+      build.save();
+    } catch (IOException e) {
+      logger.log(Level.WARNING, "Failed to save performance summaries of "
+          + build, e);
+    }
+  }
+
+  /**
+   * @return whether the summaries are available without parsing the reports
+   */
+  boolean hasSummaries() {
+    return summaries != null;
+  }
+
+  public PerformanceReportSummary getSummary(String reportFileName) {
+    return getSummaries().get(reportFileName);
+  }
+
+  /**
+   * Sets the summaries of this build, saving their histograms next to it.
+   */
+  synchronized void setSummaries(Map<String, PerformanceReportSummary> summaries) {
+    getHistogramFile().save(summaries);
+    histogramsAttached = true;
+    this.summaries = summaries;
+  }
+
+  public List<UriThreshold.Outcome> getThresholdOutcomes() {
+    return thresholdOutcomes;
+  }
+
+  void setThresholdOutcomes(List<UriThreshold.Outcome> thresholdOutcomes) {
+    this.thresholdOutcomes = thresholdOutcomes;
+  }
+
   public void setPerformanceReportMap(
-      WeakReference<PerformanceReportMap> performanceReportMap) {
+      Reference<PerformanceReportMap> performanceReportMap) {
     this.performanceReportMap = performanceReportMap;
   }
 }
@@ -0,0 +1,273 @@
+package hudson.plugins.performance;
+
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Hudson;
+import hudson.model.listeners.RunListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Catalog of the URIs, or test cases, of the reports of a project, with the
+ * first and last builds each was seen in.
+ *
+ * The catalog is updated when a build publishes its reports and is saved in
+ * the project directory, so that pages can list the URIs of a range of builds
+ * without loading any of them.
+ */
+public class PerformanceCatalog {
+
+  /**
+   * Builds a URI was seen in.
+   */
+  public static class Entry {
+
+    private int firstSeen;
+
+    private int lastSeen;
+
+    Entry(int buildNumber) {
+      this.firstSeen = buildNumber;
+      this.lastSeen = buildNumber;
+    }
+
+    public int getFirstSeen() {
+      return firstSeen;
+    }
+
+    public int getLastSeen() {
+      return lastSeen;
+    }
+
+    void seen(int buildNumber) {
+      firstSeen = Math.min(firstSeen, buildNumber);
+      lastSeen = Math.max(lastSeen, buildNumber);
+    }
+  }
+
+  /**
+   * Removes the builds being deleted from the catalog of their project.
+   */
+  @Extension
+  public static class DeletedBuildListener extends RunListener<AbstractBuild> {
+
+    public DeletedBuildListener() {
+      super(AbstractBuild.class);
+    }
+
+    @Override
+    public void onDeleted(AbstractBuild build) {
+      if (build.getAction(PerformanceBuildAction.class) != null) {
+        PerformanceCatalog.get(build.getProject()).remove(build);
+      }
+    }
+  }
+
+  private static final String CATALOG_FILE = "performance-catalog.xml";
+
+  private static final Logger LOGGER = Logger.getLogger(PerformanceCatalog.class.getName());
+
+  private static final Map<AbstractProject<?, ?>, PerformanceCatalog> CATALOGS = new WeakHashMap<AbstractProject<?, ?>, PerformanceCatalog>();
+
+  /**
+   * Entries keyed by URI, keyed by report file name.
+   */
+  private final Map<String, Map<String, Entry>> reports = new TreeMap<String, Map<String, Entry>>();
+
+  private transient AbstractProject<?, ?> project;
+
+  private transient boolean loaded;
+
+  /**
+   * Gets the catalog of a project. A project without a saved catalog has it
+   * built once from the summaries already stored with its builds; builds
+   * recorded by older versions of the plugin add the names of their report
+   * files at first, and their URIs when their reports are first summarized.
+   */
+  public static PerformanceCatalog get(AbstractProject<?, ?> project) {
+    PerformanceCatalog catalog;
+    synchronized (CATALOGS) {
+      catalog = CATALOGS.get(project);
+      if (catalog == null) {
+        catalog = new PerformanceCatalog();
+        catalog.project = project;
+        CATALOGS.put(project, catalog);
+      }
+    }
+    // loaded under the lock of the catalog, so a project being loaded doesn't
+    // hold up the others.
+    catalog.load();
+    return catalog;
+  }
+
+  private synchronized void load() {
+    if (loaded) {
+      return;
+    }
+    loaded = true;
+    XmlFile file = getFile(project);
+    if (file.exists()) {
+      try {
+        reports.putAll(((PerformanceCatalog) file.read()).reports);
+        return;
+      } catch (IOException e) {
+        LOGGER.log(Level.WARNING, "Failed to read " + file + ", rebuilding it",
+            e);
+      }
+    }
+    addBuilds(-1);
+    save();
+  }
+
+  /**
+   * Adds the summaries already stored with the builds of the project. Builds
+   * recorded by older versions of the plugin only add the file names of their
+   * reports, listed from their directory, until they are summarized.
+   *
+   * @param deletedBuild
+   *            the number of a build being deleted, to leave out, or -1
+   */
+  private void addBuilds(int deletedBuild) {
+    for (AbstractBuild<?, ?> build : project.getBuilds()) {
+      PerformanceBuildAction performanceBuildAction = build.getAction(PerformanceBuildAction.class);
+      // running builds add themselves once they are published.
+      if (performanceBuildAction == null || build.number == deletedBuild
+          || build.isBuilding()) {
+        continue;
+      }
+      if (performanceBuildAction.hasSummaries()) {
+        add(build.number, performanceBuildAction.getSummaries().values());
+      } else {
+        addReportFileNames(build);
+      }
+    }
+  }
+
+  /**
+   * Adds the file names of the reports copied to the directory of a build,
+   * without reading them.
+   */
+  private void addReportFileNames(AbstractBuild<?, ?> build) {
+    File dir = new File(build.getRootDir(),
+        PerformanceReportMap.getPerformanceReportDirRelativePath());
+    File[] entries = dir.listFiles();
+    if (entries == null) {
+      return;
+    }
+    for (File entry : entries) {
+      // files directly under the directory are JMeter reports, the others
+      // are in a directory per parser
+      File[] files = entry.isDirectory() ? entry.listFiles()
+          : new File[] { entry };
+      if (files == null) {
+        continue;
+      }
+      for (File file : files) {
+        if (!reports.containsKey(file.getName())) {
+          reports.put(file.getName(), new TreeMap<String, Entry>());
+        }
+      }
+    }
+  }
+
+  /**
+   * Forgets a build being deleted, by rebuilding the catalog from the builds
+   * left, so that reports and URIs no longer published drop out of it.
+   */
+  synchronized void remove(AbstractBuild<?, ?> build) {
+    loaded = true;
+    reports.clear();
+    addBuilds(build.number);
+    save();
+  }
+
+  private static XmlFile getFile(AbstractProject<?, ?> project) {
+    return new XmlFile(Hudson.XSTREAM, new File(project.getRootDir(),
+        CATALOG_FILE));
+  }
+
+  /**
+   * Records the URIs of reports published by a build.
+   */
+  public synchronized void record(AbstractBuild<?, ?> build,
+      Collection<PerformanceReportSummary> summaries) {
+    add(build.number, summaries);
+    save();
+  }
+
+  private void add(int buildNumber,
+      Collection<PerformanceReportSummary> summaries) {
+    for (PerformanceReportSummary summary : summaries) {
+      Map<String, Entry> entries = reports.get(summary.getReportFileName());
+      if (entries == null) {
+        entries = new TreeMap<String, Entry>();
+        reports.put(summary.getReportFileName(), entries);
+      }
+      for (UriReportSummary uriSummary : summary.getUriSummaries()) {
+        Entry entry = entries.get(uriSummary.getUri());
+        if (entry == null) {
+          entries.put(uriSummary.getUri(), new Entry(buildNumber));
+        } else {
+          entry.seen(buildNumber);
+        }
+      }
+    }
+  }
+
+  private void save() {
+    try {
+      getFile(project).write(this);
+    } catch (IOException e) {
+      LOGGER.log(Level.WARNING, "Failed to save the performance catalog of "
+          + project.getFullName(), e);
+    }
+  }
+
+  /**
+   * @return the file names of all the reports ever published by the project,
+   *         in alphabetical order
+   */
+  public synchronized List<String> getReportFileNames() {
+    return new ArrayList<String>(reports.keySet());
+  }
+
+  /**
+   * Gets the URIs of a report seen between two builds.
+   *
+   * @return the URIs in alphabetical order
+   */
+  public synchronized List<String> getUris(String reportFileName,
+      int fromBuild, int toBuild) {
+    List<String> uris = new ArrayList<String>();
+    Map<String, Entry> entries = reports.get(reportFileName);
+    if (entries == null) {
+      return uris;
+    }
+    for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+      if (entry.getValue().getLastSeen() >= fromBuild
+          && entry.getValue().getFirstSeen() <= toBuild) {
+        uris.add(entry.getKey());
+      }
+    }
+    return uris;
+  }
+
+  /**
+   * @return the entry of a URI of a report, or null if it was never seen
+   */
+  public synchronized Entry getEntry(String reportFileName, String uri) {
+    Map<String, Entry> entries = reports.get(reportFileName);
+    return entries == null ? null : entries.get(uri);
+  }
+}
@@ -0,0 +1,300 @@
+package hudson.plugins.performance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Times what the plugin spends its time on: locating, copying and parsing
+ * reports, loading them for pages, and rendering graphs, along with the hits
+ * and misses of its caches.
+ *
+ * Timings of the whole master are kept here and shown by
+ * {@link PerformanceDiagnosticsLink}; the timings of one build being published
+ * are also gathered in a {@link Timings}, for its console.
+ */
+public class PerformanceDiagnostics {
+
+  /**
+   * Number of recent durations the percentiles of an operation are computed
+   * from.
+   */
+  static final int RECENT = Integer.getInteger(
+      PerformanceDiagnostics.class.getName() + ".recent", 1000);
+
+  /**
+   * Times of an operation.
+   */
+  public static class Operation {
+
+    private final String name;
+
+    private long count;
+
+    private long totalNanos;
+
+    private long samples;
+
+    private long bytes;
+
+    /**
+     * The latest durations, in nanoseconds, as a ring.
+     */
+    private final long[] recent;
+
+    private int next;
+
+    Operation(String name, int recent) {
+      this.name = name;
+      this.recent = new long[recent];
+    }
+
+    synchronized void add(long nanos, long samples, long bytes) {
+      count++;
+      totalNanos += nanos;
+      this.samples += samples;
+      this.bytes += bytes;
+      recent[next] = nanos;
+      next = (next + 1) % recent.length;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public synchronized long getCount() {
+      return count;
+    }
+
+    /**
+     * @return the total time spent in the operation, in milliseconds
+     */
+    public synchronized long getTotal() {
+      return totalNanos / 1000000;
+    }
+
+    public synchronized long getSamples() {
+      return samples;
+    }
+
+    public synchronized long getBytes() {
+      return bytes;
+    }
+
+    /**
+     * @return the samples handled per second spent in the operation, 0 if it
+     *         handles no samples
+     */
+    public synchronized double getSamplesPerSecond() {
+      return totalNanos > 0 ? samples * 1e9 / totalNanos : 0;
+    }
+
+    /**
+     * @return the megabytes handled per second spent in the operation, 0 if it
+     *         handles no bytes
+     */
+    public synchronized double getMegabytesPerSecond() {
+      return totalNanos > 0 ? bytes * 1e9 / totalNanos / (1024 * 1024) : 0;
+    }
+
+    /**
+     * @param percent
+     *            between 0 and 100
+     * @return the duration of the recent operations at the given percentile,
+     *         in milliseconds
+     */
+    public double getRecentPercentile(double percent) {
+      long[] durations;
+      synchronized (this) {
+        int size = (int) Math.min(count, recent.length);
+        if (size == 0) {
+          return 0;
+        }
+        durations = new long[size];
+        System.arraycopy(recent, 0, durations, 0, size);
+      }
+      Arrays.sort(durations);
+      int index = (int) Math.ceil(percent / 100 * durations.length) - 1;
+      return durations[Math.max(index, 0)] / 1e6;
+    }
+
+    public double getRecentMedian() {
+      return getRecentPercentile(50);
+    }
+
+    public double getRecentLine99() {
+      return getRecentPercentile(99);
+    }
+  }
+
+  /**
+   * Hits and misses of a cache.
+   */
+  public static class Cache {
+
+    private final String name;
+
+    private long hits;
+
+    private long misses;
+
+    Cache(String name) {
+      this.name = name;
+    }
+
+    synchronized void add(boolean hit) {
+      if (hit) {
+        hits++;
+      } else {
+        misses++;
+      }
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public synchronized long getHits() {
+      return hits;
+    }
+
+    public synchronized long getMisses() {
+      return misses;
+    }
+
+    /**
+     * @return the percentage of lookups that hit, 0 if there were none
+     */
+    public synchronized double getHitPercent() {
+      return hits + misses > 0 ? hits * 100.0 / (hits + misses) : 0;
+    }
+  }
+
+  /**
+   * Times of the operations of one build, summed by operation.
+   */
+  public static class Timings {
+
+    private final Map<String, long[]> operations = new LinkedHashMap<String, long[]>();
+
+    synchronized void add(String operation, long nanos, long samples,
+        long bytes) {
+      long[] totals = operations.get(operation);
+      if (totals == null) {
+        totals = new long[3];
+        operations.put(operation, totals);
+      }
+      totals[0] += nanos;
+      totals[1] += samples;
+      totals[2] += bytes;
+    }
+
+    /**
+     * @return the time, and the samples and bytes, of each operation on one
+     *         line
+     */
+    @Override
+    public synchronized String toString() {
+      StringBuilder line = new StringBuilder();
+      for (Map.Entry<String, long[]> operation : operations.entrySet()) {
+        long[] totals = operation.getValue();
+        if (line.length() > 0) {
+          line.append(", ");
+        }
+        line.append(operation.getKey()).append(' ').append(
+            totals[0] / 1000000).append(" ms");
+        if (totals[1] > 0 || totals[2] > 0) {
+          double seconds = Math.max(totals[0], 1) / 1e9;
+          line.append(String.format(" (%d samples, %.0f samples/s, %.1f MB/s)",
+              totals[1], totals[1] / seconds, totals[2] / seconds
+                  / (1024 * 1024)));
+        }
+      }
+      return line.toString();
+    }
+  }
+
+  private static final Map<String, Operation> OPERATIONS = new TreeMap<String, Operation>();
+
+  private static final Map<String, Cache> CACHES = new TreeMap<String, Cache>();
+
+  private PerformanceDiagnostics() {
+  }
+
+  /**
+   * @return the start time of an operation, to give to {@link #record}
+   */
+  public static long start() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Records an operation that started at the given time and just ended.
+   */
+  public static void record(String operation, long start) {
+    record(operation, start, 0, 0, null);
+  }
+
+  /**
+   * Records an operation that started at the given time and just ended, the
+   * samples and bytes it handled, and adds it to the timings of a build.
+   *
+   * @param timings
+   *            the timings of the build the operation is for, or null
+   */
+  public static void record(String operation, long start, long samples,
+      long bytes, Timings timings) {
+    long nanos = System.nanoTime() - start;
+    getOperation(operation).add(nanos, samples, bytes);
+    if (timings != null) {
+      timings.add(operation, nanos, samples, bytes);
+    }
+  }
+
+  /**
+   * Records a lookup in a cache.
+   */
+  public static void lookup(String cache, boolean hit) {
+    Cache c;
+    synchronized (CACHES) {
+      c = CACHES.get(cache);
+      if (c == null) {
+        c = new Cache(cache);
+        CACHES.put(cache, c);
+      }
+    }
+    c.add(hit);
+  }
+
+  static Operation getOperation(String operation) {
+    synchronized (OPERATIONS) {
+      Operation o = OPERATIONS.get(operation);
+      if (o == null) {
+        o = new Operation(operation, Math.max(RECENT, 1));
+        OPERATIONS.put(operation, o);
+      }
+      return o;
+    }
+  }
+
+  /**
+   * @return the operations recorded so far, by name
+   */
+  public static List<Operation> getOperations() {
+    synchronized (OPERATIONS) {
+      return new ArrayList<Operation>(OPERATIONS.values());
+    }
+  }
+
+  /**
+   * @return the caches looked up so far, by name
+   */
+  public static List<Cache> getCaches() {
+    synchronized (CACHES) {
+      return new ArrayList<Cache>(CACHES.values());
+    }
+  }
+}
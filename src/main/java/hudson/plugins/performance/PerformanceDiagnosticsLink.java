@@ -0,0 +1,48 @@
+package hudson.plugins.performance;
+
+import hudson.Extension;
+import hudson.model.ManagementLink;
+
+import java.util.List;
+
+/**
+ * Shows the {@link PerformanceDiagnostics} of the master on the management
+ * page.
+ */
+@Extension
+public class PerformanceDiagnosticsLink extends ManagementLink {
+
+  @Override
+  public String getIconFileName() {
+    return "graph.gif";
+  }
+
+  @Override
+  public String getUrlName() {
+    return "performance-diagnostics";
+  }
+
+  public String getDisplayName() {
+    return Messages.Diagnostics_DisplayName();
+  }
+
+  @Override
+  public String getDescription() {
+    return Messages.Diagnostics_Description();
+  }
+
+  public List<PerformanceDiagnostics.Operation> getOperations() {
+    return PerformanceDiagnostics.getOperations();
+  }
+
+  public List<PerformanceDiagnostics.Cache> getCaches() {
+    return PerformanceDiagnostics.getCaches();
+  }
+
+  /**
+   * @return the value with one decimal
+   */
+  public String format(double value) {
+    return String.format("%.1f", value);
+  }
+}
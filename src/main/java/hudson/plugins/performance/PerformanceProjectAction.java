@@ -9,17 +9,18 @@ import hudson.plugins.performance.PerformanceReportPosition;
 
 import java.awt.BasicStroke;
 import java.awt.Color;
-import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.GregorianCalendar;
-import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.servlet.http.HttpServletResponse;
+
 import org.jfree.chart.ChartFactory;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.axis.CategoryAxis;
@@ -31,6 +32,7 @@ import org.jfree.chart.plot.PlotOrientation;
 import org.jfree.chart.renderer.category.LineAndShapeRenderer;
 import org.jfree.chart.renderer.category.BarRenderer;
 import org.jfree.chart.title.LegendTitle;
+import org.jfree.chart.title.TextTitle;
 import org.jfree.data.category.CategoryDataset;
 import org.jfree.ui.RectangleEdge;
 import org.jfree.ui.RectangleInsets;
@@ -322,6 +324,16 @@ public final class PerformanceProjectAction implements Action {
 
   public void doErrorsGraph(StaplerRequest request, StaplerResponse response)
       throws IOException {
+    long start = PerformanceDiagnostics.start();
+    try {
+      errorsGraph(request, response);
+    } finally {
+      PerformanceDiagnostics.record("Errors graph", start);
+    }
+  }
+
+  private void errorsGraph(StaplerRequest request, StaplerResponse response)
+      throws IOException {
     PerformanceReportPosition performanceReportPosition = new PerformanceReportPosition();
     request.bindParameters(performanceReportPosition);
     String performanceReportNameFile = performanceReportPosition.getPerformanceReportPosition();
@@ -337,39 +349,32 @@ public final class PerformanceProjectAction implements Action {
       response.sendRedirect2(request.getContextPath() + "/images/headless.png");
       return;
     }
-    DataSetBuilder<String, NumberOnlyBuildLabel> dataSetBuilderErrors = new DataSetBuilder<String, NumberOnlyBuildLabel>();
-    List<? extends AbstractBuild<?, ?>> builds = getProject().getBuilds();
-    Range buildsLimits = getFirstAndLastBuild(request, builds);
-
-    int nbBuildsToAnalyze = builds.size();
-    for (AbstractBuild<?, ?> currentBuild :builds) {
-      if (buildsLimits.in(nbBuildsToAnalyze)) {
-    	
-    	if (!buildsLimits.includedByStep(currentBuild.number)){
-    		continue;
-    	}  
-    	  
-        NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(currentBuild);
-        PerformanceBuildAction performanceBuildAction = currentBuild.getAction(PerformanceBuildAction.class);
-        if (performanceBuildAction == null) {
-          continue;
-        }
-        PerformanceReport performanceReport = performanceBuildAction.getPerformanceReportMap().getPerformanceReport(
-            performanceReportNameFile);
-        if (performanceReport == null) {
-          nbBuildsToAnalyze--;
-          continue;
-        }
-        dataSetBuilderErrors.add(performanceReport.errorPercent(),
-            Messages.ProjectAction_Errors(), label);
-      }
-      nbBuildsToAnalyze--;
+    GraphConfigurationDetail graphConf = (GraphConfigurationDetail) createUserConfiguration(request);
+    String trendKey = getTrendKey(graphConf, performanceReportNameFile);
+    String graphKey = trendKey + GraphConfigurationDetail.SEPARATOR + "errors";
+    long lastModified = getGraphLastModified();
+    if (TrendGraphCache.sendCached(request, response, graphKey,
+        lastModified, 400, 200)) {
+      return;
     }
-    ChartUtil.generateGraph(request, response,
-        createErrorsChart(dataSetBuilderErrors.build()), 400, 200);
+    PerformanceTrend trend = getTrend(graphConf, trendKey,
+        performanceReportNameFile);
+    generateTrendGraph(request, response, graphKey, lastModified, trend,
+        createErrorsChart(trend.downsample(getGraphWidth(request, 400),
+            PerformanceTrend.Metric.ERROR_PERCENT).getErrorsDataSet().build()));
   }
 
-  	public void doRespondingTimeGraphPerTestCaseMode(StaplerRequest request,
+  public void doRespondingTimeGraphPerTestCaseMode(StaplerRequest request, StaplerResponse response)
+      throws IOException {
+    long start = PerformanceDiagnostics.start();
+    try {
+      respondingTimeGraphPerTestCaseMode(request, response);
+    } finally {
+      PerformanceDiagnostics.record("Test case responding time graph", start);
+    }
+  }
+
+  	private void respondingTimeGraphPerTestCaseMode(StaplerRequest request,
   	      StaplerResponse response) throws IOException {
   		PerformanceReportPosition performanceReportPosition = new PerformanceReportPosition();
   	    request.bindParameters(performanceReportPosition);
@@ -386,57 +391,28 @@ public final class PerformanceProjectAction implements Action {
   	      response.sendRedirect2(request.getContextPath() + "/images/headless.png");
   	      return;
   	    }
-  	    DataSetBuilder<String, NumberOnlyBuildLabel> dataSetBuilderAverage = new DataSetBuilder<String, NumberOnlyBuildLabel>();
-  	    List<? extends AbstractBuild<?, ?>> builds = getProject().getBuilds();
-  	    Range buildsLimits = getFirstAndLastBuild(request, builds);
-  	    
-  	    
-  	    int nbBuildsToAnalyze = builds.size();
-  	    
-  	    for (AbstractBuild<?, ?> build : builds) {
-  	       if (buildsLimits.in(nbBuildsToAnalyze)) {
-  	        NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(build);
-  	        
-  	        if (!buildsLimits.includedByStep(build.number)){
-  	        	continue;
-  	        }
-  	        PerformanceBuildAction performanceBuildAction = build.getAction(PerformanceBuildAction.class);
-  	        if (performanceBuildAction == null) {
-  	          continue;
-  	        }
-  	        PerformanceReport performanceReport = performanceBuildAction.getPerformanceReportMap().getPerformanceReport(
-  	            performanceReportNameFile);
-  	        if (performanceReport == null) {
-  	          nbBuildsToAnalyze--;
-  	          continue;
-  	        }
-  	        
-  	        List<HttpSample> allSamples = new ArrayList<HttpSample>();
-  	        for (UriReport currentReport : performanceReport.getUriReportMap().values()) {
-  	          allSamples.addAll(currentReport.getHttpSampleList());
-  	        }
-  	        Collections.sort(allSamples);
-  	        for(HttpSample sample : allSamples){
-  	        	if (sample.hasError()){
-  	        		// we set duration as 0 for failed tests
-  	        		dataSetBuilderAverage.add(0,
-  	                        sample.getUri(), label);
-  	        	}
-  	        	else{
-  	        	dataSetBuilderAverage.add(sample.getDuration(),
-  	                    sample.getUri(), label);
-  	        	}
-  	        }
-  	        
-  	      }
-  	      nbBuildsToAnalyze--;
-  	    }
+  	    GraphConfigurationDetail graphConf = (GraphConfigurationDetail) createUserConfiguration(request);
+  	    PerformanceTrend trend = getTrend(graphConf,
+  	        getTrendKey(graphConf, performanceReportNameFile),
+  	        performanceReportNameFile);
+  	    // one series per test case: only chart the slowest ones
+  	    List<String> testCases = trend.getSlowestUris(getTestCaseCount(request));
   	    ChartUtil.generateGraph(request, response,
-  	        createRespondingTimeChart(dataSetBuilderAverage.build()), 600, 200);
+  	        createRespondingTimeChart(trend.getTestCaseDataSet(testCases).build()), 600, 200);
   		
   	}
   
-    public void doRespondingTimeGraph(StaplerRequest request,
+  public void doRespondingTimeGraph(StaplerRequest request, StaplerResponse response)
+      throws IOException {
+    long start = PerformanceDiagnostics.start();
+    try {
+      respondingTimeGraph(request, response);
+    } finally {
+      PerformanceDiagnostics.record("Responding time graph", start);
+    }
+  }
+
+    private void respondingTimeGraph(StaplerRequest request,
       StaplerResponse response) throws IOException {
     	PerformanceReportPosition performanceReportPosition = new PerformanceReportPosition();
         request.bindParameters(performanceReportPosition);
@@ -453,44 +429,32 @@ public final class PerformanceProjectAction implements Action {
           response.sendRedirect2(request.getContextPath() + "/images/headless.png");
           return;
         }
-        DataSetBuilder<String, NumberOnlyBuildLabel> dataSetBuilderAverage = new DataSetBuilder<String, NumberOnlyBuildLabel>();
-        List<? extends AbstractBuild<?, ?>> builds = getProject().getBuilds();
-        Range buildsLimits = getFirstAndLastBuild(request, builds);
-
-        int nbBuildsToAnalyze = builds.size();
-        for (AbstractBuild<?, ?> build : builds) {
-          if (buildsLimits.in(nbBuildsToAnalyze)) {
-        	
-        	if (!buildsLimits.includedByStep(build.number)){
-          		continue;
-          	}  
-        	    
-            NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(build);
-            PerformanceBuildAction performanceBuildAction = build.getAction(PerformanceBuildAction.class);
-            if (performanceBuildAction == null) {
-              continue;
-            }
-            PerformanceReport performanceReport = performanceBuildAction.getPerformanceReportMap().getPerformanceReport(
-                performanceReportNameFile);
-            if (performanceReport == null) {
-              nbBuildsToAnalyze--;
-              continue;
-            }
-            dataSetBuilderAverage.add(performanceReport.getMedian(),
-                Messages.ProjectAction_Median(), label);
-            dataSetBuilderAverage.add(performanceReport.getAverage(),
-                Messages.ProjectAction_Average(), label);
-            dataSetBuilderAverage.add(performanceReport.get90Line(),
-                Messages.ProjectAction_Line90(), label);
-          }
-          nbBuildsToAnalyze--;
-          continue;
+        GraphConfigurationDetail graphConf = (GraphConfigurationDetail) createUserConfiguration(request);
+        String trendKey = getTrendKey(graphConf, performanceReportNameFile);
+        String graphKey = trendKey + GraphConfigurationDetail.SEPARATOR + "respondingTime";
+        long lastModified = getGraphLastModified();
+        if (TrendGraphCache.sendCached(request, response, graphKey,
+            lastModified, 400, 200)) {
+          return;
         }
-        ChartUtil.generateGraph(request, response,
-            createRespondingTimeChart(dataSetBuilderAverage.build()), 400, 200);
+        PerformanceTrend trend = getTrend(graphConf, trendKey,
+            performanceReportNameFile);
+        generateTrendGraph(request, response, graphKey, lastModified, trend,
+            createRespondingTimeChart(trend.downsample(getGraphWidth(request, 400),
+                PerformanceTrend.Metric.LINE90).getRespondingTimeDataSet().build()));
   }
     
-    public void doThroughputGraph(StaplerRequest request,
+  public void doThroughputGraph(StaplerRequest request, StaplerResponse response)
+      throws IOException {
+    long start = PerformanceDiagnostics.start();
+    try {
+      throughputGraph(request, response);
+    } finally {
+      PerformanceDiagnostics.record("Throughput graph", start);
+    }
+  }
+
+    private void throughputGraph(StaplerRequest request,
       StaplerResponse response) throws IOException {
     	PerformanceReportPosition performanceReportPosition = new PerformanceReportPosition();
         request.bindParameters(performanceReportPosition);
@@ -507,38 +471,32 @@ public final class PerformanceProjectAction implements Action {
           response.sendRedirect2(request.getContextPath() + "/images/headless.png");
           return;
         }
-        DataSetBuilder<String, NumberOnlyBuildLabel> dataSetBuilderAverage = new DataSetBuilder<String, NumberOnlyBuildLabel>();
-        List<? extends AbstractBuild<?, ?>> builds = getProject().getBuilds();
-        Range buildsLimits = getFirstAndLastBuild(request, builds);
-
-        int nbBuildsToAnalyze = builds.size();
-        for (AbstractBuild<?, ?> build : builds) {
-          if (buildsLimits.in(nbBuildsToAnalyze)) {
-        	
-        	if (!buildsLimits.includedByStep(build.number)){
-          		continue;
-          	}  
-        	    
-            NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(build);
-            PerformanceBuildAction performanceBuildAction = build.getAction(PerformanceBuildAction.class);
-            if (performanceBuildAction == null) {
-              continue;
-            }
-            PerformanceReport performanceReport = performanceBuildAction.getPerformanceReportMap().getPerformanceReport(
-                performanceReportNameFile);
-            if (performanceReport == null) {
-              nbBuildsToAnalyze--;
-              continue;
-            }
-            dataSetBuilderAverage.add(performanceReport.getThrougput(), Messages.ProjectAction_Throughput(), label);
-          }
-          nbBuildsToAnalyze--;
-          continue;
+        GraphConfigurationDetail graphConf = (GraphConfigurationDetail) createUserConfiguration(request);
+        String trendKey = getTrendKey(graphConf, performanceReportNameFile);
+        String graphKey = trendKey + GraphConfigurationDetail.SEPARATOR + "throughput";
+        long lastModified = getGraphLastModified();
+        if (TrendGraphCache.sendCached(request, response, graphKey,
+            lastModified, 400, 200)) {
+          return;
         }
-        ChartUtil.generateGraph(request, response, createThroughputChart(dataSetBuilderAverage.build()), 400, 200);
+        PerformanceTrend trend = getTrend(graphConf, trendKey,
+            performanceReportNameFile);
+        generateTrendGraph(request, response, graphKey, lastModified, trend,
+            createThroughputChart(trend.downsample(getGraphWidth(request, 400),
+                PerformanceTrend.Metric.THROUGHPUT).getThroughputDataSet().build()));
   }
 
-    public void doBytesTransferredGraph(StaplerRequest request, StaplerResponse response) throws IOException {
+  public void doBytesTransferredGraph(StaplerRequest request, StaplerResponse response)
+      throws IOException {
+    long start = PerformanceDiagnostics.start();
+    try {
+      bytesTransferredGraph(request, response);
+    } finally {
+      PerformanceDiagnostics.record("Bytes transferred graph", start);
+    }
+  }
+
+    private void bytesTransferredGraph(StaplerRequest request, StaplerResponse response) throws IOException {
     	PerformanceReportPosition performanceReportPosition = new PerformanceReportPosition();
         request.bindParameters(performanceReportPosition);
         String performanceReportNameFile = performanceReportPosition.getPerformanceReportPosition();
@@ -554,40 +512,32 @@ public final class PerformanceProjectAction implements Action {
           response.sendRedirect2(request.getContextPath() + "/images/headless.png");
           return;
         }
-        DataSetBuilder<String, NumberOnlyBuildLabel> dataSetBuilderAverage = new DataSetBuilder<String, NumberOnlyBuildLabel>();
-        List<? extends AbstractBuild<?, ?>> builds = getProject().getBuilds();
-        Range buildsLimits = getFirstAndLastBuild(request, builds);
-
-        int nbBuildsToAnalyze = builds.size();
-        for (AbstractBuild<?, ?> build : builds) {
-          if (buildsLimits.in(nbBuildsToAnalyze)) {
-        	
-        	if (!buildsLimits.includedByStep(build.number)){
-          		continue;
-          	}  
-        	    
-            NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(build);
-            PerformanceBuildAction performanceBuildAction = build.getAction(PerformanceBuildAction.class);
-            if (performanceBuildAction == null) {
-              continue;
-            }
-            PerformanceReport performanceReport = performanceBuildAction.getPerformanceReportMap().getPerformanceReport(
-                performanceReportNameFile);
-            if (performanceReport == null) {
-              nbBuildsToAnalyze--;
-              continue;
-            }
-            dataSetBuilderAverage.add(performanceReport.getAverageBytesTransferred()/1024.00,
-            		Messages.ProjectAction_BytesTransferred(), label);
-          }
-          nbBuildsToAnalyze--;
-          continue;
+        GraphConfigurationDetail graphConf = (GraphConfigurationDetail) createUserConfiguration(request);
+        String trendKey = getTrendKey(graphConf, performanceReportNameFile);
+        String graphKey = trendKey + GraphConfigurationDetail.SEPARATOR + "bytesTransferred";
+        long lastModified = getGraphLastModified();
+        if (TrendGraphCache.sendCached(request, response, graphKey,
+            lastModified, 400, 200)) {
+          return;
         }
-        ChartUtil.generateGraph(request, response,
-        		createBytesTransferredChart(dataSetBuilderAverage.build()), 400, 200);
+        PerformanceTrend trend = getTrend(graphConf, trendKey,
+            performanceReportNameFile);
+        generateTrendGraph(request, response, graphKey, lastModified, trend,
+            createBytesTransferredChart(trend.downsample(getGraphWidth(request, 400),
+                PerformanceTrend.Metric.BYTES_TRANSFERRED).getBytesTransferredDataSet().build()));
+  }
+
+  public void doBytesTransferredGraphPerTestCase(StaplerRequest request, StaplerResponse response)
+      throws IOException {
+    long start = PerformanceDiagnostics.start();
+    try {
+      bytesTransferredGraphPerTestCase(request, response);
+    } finally {
+      PerformanceDiagnostics.record("Test case bytes transferred graph", start);
+    }
   }
 
-    public void doBytesTransferredGraphPerTestCase(StaplerRequest request, StaplerResponse response) throws IOException {
+    private void bytesTransferredGraphPerTestCase(StaplerRequest request, StaplerResponse response) throws IOException {
     	PerformanceReportPosition performanceReportPosition = new PerformanceReportPosition();
         request.bindParameters(performanceReportPosition);
         String performanceReportNameFile = performanceReportPosition.getPerformanceReportPosition();
@@ -603,42 +553,25 @@ public final class PerformanceProjectAction implements Action {
           response.sendRedirect2(request.getContextPath() + "/images/headless.png");
           return;
         }
-        DataSetBuilder<String, NumberOnlyBuildLabel> dataSetBuilderAverage = new DataSetBuilder<String, NumberOnlyBuildLabel>();
-        List<? extends AbstractBuild<?, ?>> builds = getProject().getBuilds();
-        Range buildsLimits = getFirstAndLastBuild(request, builds);
-
-        int nbBuildsToAnalyze = builds.size();
-        for (AbstractBuild<?, ?> build : builds) {
-          if (buildsLimits.in(nbBuildsToAnalyze)) {
-        	
-        	if (!buildsLimits.includedByStep(build.number)){
-          		continue;
-          	}  
-        	    
-            NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(build);
-            PerformanceBuildAction performanceBuildAction = build.getAction(PerformanceBuildAction.class);
-            if (performanceBuildAction == null) {
-              continue;
-            }
-            PerformanceReport performanceReport = performanceBuildAction.getPerformanceReportMap().getPerformanceReport(
-                performanceReportNameFile);
-            if (performanceReport == null) {
-              nbBuildsToAnalyze--;
-              continue;
-            }
-            for (UriReport uriReport : performanceReport.getUriReportMap().values()) {
-              dataSetBuilderAverage.add(uriReport.getAverageBytesTransferred()/1024.00,
-            		   uriReport.getUri(), label);
-            }
-          }
-          nbBuildsToAnalyze--;
-          continue;
-        }
+        GraphConfigurationDetail graphConf = (GraphConfigurationDetail) createUserConfiguration(request);
+        PerformanceTrend trend = getTrend(graphConf,
+            getTrendKey(graphConf, performanceReportNameFile),
+            performanceReportNameFile);
         ChartUtil.generateGraph(request, response,
-        		createBytesTransferredChart(dataSetBuilderAverage.build()), 400, 200);
+            createBytesTransferredChart(trend.getBytesTransferredPerUriDataSet().build()), 400, 200);
   }
 
-  public void doSummarizerGraph(StaplerRequest request,
+  public void doSummarizerGraph(StaplerRequest request, StaplerResponse response)
+      throws IOException {
+    long start = PerformanceDiagnostics.start();
+    try {
+      summarizerGraph(request, response);
+    } finally {
+      PerformanceDiagnostics.record("Summarizer graph", start);
+    }
+  }
+
+  private void summarizerGraph(StaplerRequest request,
                                 StaplerResponse response) throws IOException {
 
         PerformanceReportPosition performanceReportPosition = new PerformanceReportPosition();
@@ -660,44 +593,36 @@ public final class PerformanceProjectAction implements Action {
       DataSetBuilder<String, NumberOnlyBuildLabel> dataSetBuilderSummarizerThroughput = new DataSetBuilder<String, NumberOnlyBuildLabel>();
       DataSetBuilder<String, NumberOnlyBuildLabel> dataSetBuilderSummarizerErrors = new DataSetBuilder<String, NumberOnlyBuildLabel>();
       
-      List<?> builds = getProject().getBuilds();
+      List<? extends AbstractBuild<?, ?>> builds = getProject().getBuilds();
       Range buildsLimits = getFirstAndLastBuild(request, builds);
 
-      int nbBuildsToAnalyze = builds.size();
-      for (Iterator<?> iterator = builds.iterator(); iterator.hasNext();) {
-        AbstractBuild<?, ?> currentBuild = (AbstractBuild<?, ?>) iterator.next();
-        if (buildsLimits.in(nbBuildsToAnalyze)) {
-          NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(currentBuild);
-          PerformanceBuildAction performanceBuildAction = currentBuild.getAction(PerformanceBuildAction.class);
-          if (performanceBuildAction == null) {
-            continue;
-          }
-          PerformanceReport performanceReport = performanceBuildAction.getPerformanceReportMap().getPerformanceReport(
-              performanceReportNameFile);
-
+      for (AbstractBuild<?, ?> currentBuild : buildsLimits.getBuilds(builds)) {
+        NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(currentBuild);
+        PerformanceBuildAction performanceBuildAction = currentBuild.getAction(PerformanceBuildAction.class);
+        if (performanceBuildAction == null) {
+          continue;
+        }
+        PerformanceReport performanceReport = performanceBuildAction.getPerformanceReportMap().getPerformanceReport(
+            performanceReportNameFile);
 
-          if (performanceReport == null) {
-            nbBuildsToAnalyze--;
-            continue;
-          }
 
-          for (String key:performanceReport.getUriReportMap().keySet()) {
-            // UriReport.getAverage() or UriReport.getHttpSampleList().get(0).getDuration is same thing as there would
-            // be only one HttpSample when parsing Summarizer log
-            Long methodAvg = performanceReport.getUriReportMap().get(key).getAverage();
-            Long methodMin = performanceReport.getUriReportMap().get(key).getHttpSampleList().get(0).getSummarizerMin();
-            Long methodMax = performanceReport.getUriReportMap().get(key).getHttpSampleList().get(0).getSummarizerMax();
-            Double tp = performanceReport.getUriReportMap().get(key).getHttpSampleList().get(0).getThroughput();
-            float methodErrors= (float) performanceReport.getUriReportMap().get(key).getHttpSampleList().get(0).getSummarizerErrors();
-            dataSetBuilderSummarizer.add(methodAvg, "Avg", label);
-            dataSetBuilderSummarizer.add(methodMin, "Min", label);
-            dataSetBuilderSummarizer.add(methodMax, "Max", label);
-            dataSetBuilderSummarizerThroughput.add(tp, "Throughput", label);
-            dataSetBuilderSummarizerErrors.add(methodErrors, "%" + Messages.ProjectAction_Errors(), label);
-          };
+        if (performanceReport == null) {
+          continue;
         }
-
-       nbBuildsToAnalyze--;
+        for (String key:performanceReport.getUriReportMap().keySet()) {
+          // UriReport.getAverage() or UriReport.getHttpSampleList().get(0).getDuration is same thing as there would
+          // be only one HttpSample when parsing Summarizer log
+          Long methodAvg = performanceReport.getUriReportMap().get(key).getAverage();
+          Long methodMin = performanceReport.getUriReportMap().get(key).getHttpSampleList().get(0).getSummarizerMin();
+          Long methodMax = performanceReport.getUriReportMap().get(key).getHttpSampleList().get(0).getSummarizerMax();
+          Double tp = performanceReport.getUriReportMap().get(key).getHttpSampleList().get(0).getThroughput();
+          float methodErrors= (float) performanceReport.getUriReportMap().get(key).getHttpSampleList().get(0).getSummarizerErrors();
+          dataSetBuilderSummarizer.add(methodAvg, "Avg", label);
+          dataSetBuilderSummarizer.add(methodMin, "Min", label);
+          dataSetBuilderSummarizer.add(methodMax, "Max", label);
+          dataSetBuilderSummarizerThroughput.add(tp, "Throughput", label);
+          dataSetBuilderSummarizerErrors.add(methodErrors, "%" + Messages.ProjectAction_Errors(), label);
+        };
       }
 
       
@@ -717,6 +642,129 @@ public final class PerformanceProjectAction implements Action {
   }
 
 
+  /**
+   * Streams the trend of a report, or of one of its URIs, as JSON, for charts
+   * rendered by the client.
+   * 
+   * @see #getTrendData
+   */
+  public void doTrendJson(StaplerRequest request, StaplerResponse response)
+      throws IOException {
+    PerformanceTrend trend = getTrendData(request, response);
+    if (trend == null) {
+      return;
+    }
+    response.setContentType("application/json;charset=UTF-8");
+    Writer out = response.getCompressedWriter(request);
+    try {
+      trend.writeJson(out, request.getParameter("uri"));
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Streams the trend of a report, or of one of its URIs, as CSV.
+   * 
+   * @see #getTrendData
+   */
+  public void doTrendCsv(StaplerRequest request, StaplerResponse response)
+      throws IOException {
+    PerformanceTrend trend = getTrendData(request, response);
+    if (trend == null) {
+      return;
+    }
+    response.setContentType("text/csv;charset=UTF-8");
+    Writer out = response.getCompressedWriter(request);
+    try {
+      trend.writeCsv(out, request.getParameter("uri"));
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Gets the trend requested by the parameters of a data request:
+   * <code>performanceReportPosition</code> names the report, and the
+   * optional <code>fromBuild</code> and <code>toBuild</code> build numbers
+   * bound the builds, which otherwise are those of the user's graph
+   * configuration.
+   * 
+   * @return the trend, or null if an error was sent
+   */
+  private PerformanceTrend getTrendData(StaplerRequest request,
+      StaplerResponse response) throws IOException {
+    String performanceReportNameFile = getTrendReportFilename(request);
+    if (performanceReportNameFile == null) {
+      if (getPerformanceReportList().size() == 1) {
+        performanceReportNameFile = getPerformanceReportList().get(0);
+      } else {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+            "performanceReportPosition is required");
+        return null;
+      }
+    }
+    GraphConfigurationDetail graphConf = (GraphConfigurationDetail) createUserConfiguration(request);
+    String trendKey = getTrendKey(graphConf, performanceReportNameFile);
+    String fromBuild = request.getParameter("fromBuild");
+    String toBuild = request.getParameter("toBuild");
+    if (fromBuild == null && toBuild == null) {
+      return getTrend(graphConf, trendKey, performanceReportNameFile);
+    }
+    int from;
+    int to;
+    try {
+      from = fromBuild == null ? 0 : Integer.parseInt(fromBuild);
+      to = toBuild == null ? Integer.MAX_VALUE : Integer.parseInt(toBuild);
+    } catch (NumberFormatException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "fromBuild and toBuild must be build numbers");
+      return null;
+    }
+    trendKey += GraphConfigurationDetail.SEPARATOR + from
+        + GraphConfigurationDetail.SEPARATOR + to;
+    PerformanceTrend trend = PerformanceTrend.getCached(trendKey);
+    if (trend == null) {
+      List<? extends AbstractBuild<?, ?>> builds = getProject().getBuilds();
+      trend = PerformanceTrend.compute(builds,
+          getRangeOfBuildNumbers(builds, from, to), performanceReportNameFile);
+      if (trend.isComplete()) {
+        PerformanceTrend.cache(trendKey, trend);
+      }
+    }
+    return trend;
+  }
+
+  /**
+   * @return the range of the builds numbered from <code>from</code> to
+   *         <code>to</code> included
+   */
+  private static Range getRangeOfBuildNumbers(List<?> builds, int from, int to) {
+    // builds are ordered newest first, so by decreasing number
+    int fromIndex = countBuildsNumberedAfter(builds, to);
+    int toIndex = countBuildsNumberedAfter(builds, from - 1);
+    return new Range(builds.size() - toIndex + 1, builds.size() - fromIndex);
+  }
+
+  /**
+   * Binary search over the build list, newest first, for the number of builds
+   * numbered strictly after the given number.
+   */
+  private static int countBuildsNumberedAfter(List<?> builds, int number) {
+    int low = 0;
+    int high = builds.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      AbstractBuild<?, ?> build = (AbstractBuild<?, ?>) builds.get(mid);
+      if (build.number > number) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
   /**
    * <p>
    * give a list of two Integer : the smallest build to use and the biggest.
@@ -727,9 +775,12 @@ public final class PerformanceProjectAction implements Action {
    * @return outList
    */
   private Range getFirstAndLastBuild(StaplerRequest request, List<?> builds) {
-    Range range = new Range();
-    GraphConfigurationDetail graphConf = (GraphConfigurationDetail) createUserConfiguration(request);
+    return getFirstAndLastBuild(
+        (GraphConfigurationDetail) createUserConfiguration(request), builds);
+  }
 
+  Range getFirstAndLastBuild(GraphConfigurationDetail graphConf,
+      List<?> builds) {
     if (graphConf.isNone()) {
           return all(builds);
     }
@@ -752,38 +803,155 @@ public final class PerformanceProjectAction implements Action {
       if (graphConf.isDefaultDates()) {
           return all(builds);
       } else {
-        int firstBuild = -1;
-        int lastBuild = -1;
-        int var = builds.size();
-        GregorianCalendar firstDate = null;
-        GregorianCalendar lastDate = null;
+        long firstDate;
+        long lastDate;
         try {
-          firstDate = GraphConfigurationDetail.getGregorianCalendarFromString(graphConf.getFirstDayCount());
-          lastDate = GraphConfigurationDetail.getGregorianCalendarFromString(graphConf.getLastDayCount());
-          lastDate.set(GregorianCalendar.HOUR_OF_DAY, 23);
-          lastDate.set(GregorianCalendar.MINUTE, 59);
-          lastDate.set(GregorianCalendar.SECOND, 59);
+          firstDate = GraphConfigurationDetail.getGregorianCalendarFromString(graphConf.getFirstDayCount()).getTimeInMillis();
+          GregorianCalendar lastDay = GraphConfigurationDetail.getGregorianCalendarFromString(graphConf.getLastDayCount());
+          lastDay.set(GregorianCalendar.HOUR_OF_DAY, 23);
+          lastDay.set(GregorianCalendar.MINUTE, 59);
+          lastDay.set(GregorianCalendar.SECOND, 59);
+          lastDate = lastDay.getTimeInMillis();
         } catch (ParseException e) {
           LOGGER.log(Level.SEVERE, "Error during the manage of the Calendar", e);
+          return all(builds);
         }
-        for (Iterator<?> iterator = builds.iterator(); iterator.hasNext();) {
-          AbstractBuild<?, ?> currentBuild = (AbstractBuild<?, ?>) iterator.next();
-          GregorianCalendar buildDate = new GregorianCalendar();
-          buildDate.setTime(currentBuild.getTimestamp().getTime());
-          if (firstDate.getTime().before(buildDate.getTime())) {
-            firstBuild = var;
-          }
-          if (lastBuild < 0 && lastDate.getTime().after(buildDate.getTime())) {
-            lastBuild = var;
-          }
-          var--;
-        }
+        // builds are ordered newest first, so the builds started after a date
+        // are a prefix of the list and those started before it a suffix
+        int firstIndex = countBuildsStartedAfter(builds, firstDate) - 1;
+        int lastIndex = countBuildsStartedAfter(builds, lastDate - 1);
+        int firstBuild = firstIndex < 0 ? -1 : builds.size() - firstIndex;
+        int lastBuild = lastIndex >= builds.size() ? -1 : builds.size() - lastIndex;
         return new Range(firstBuild,lastBuild);
       }
     }
     throw new IllegalArgumentException("unsupported configType + " + graphConf.getConfigType());
   }
 
+  /**
+   * Binary search over the build list, newest first, for the number of builds
+   * started strictly after the given time.
+   */
+  private static int countBuildsStartedAfter(List<?> builds, long time) {
+    int low = 0;
+    int high = builds.size();
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      AbstractBuild<?, ?> build = (AbstractBuild<?, ?>) builds.get(mid);
+      if (build.getTimeInMillis() > time) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Identifies the trend of a report for {@link PerformanceTrend} and, with
+   * the graph name appended, a rendered trend graph for
+   * {@link TrendGraphCache}. A trend only changes when a build is added,
+   * completes or is deleted, or when the user changes the graph configuration.
+   */
+  private String getTrendKey(GraphConfigurationDetail graphConf,
+      String performanceReportNameFile) {
+    AbstractBuild<?, ?> lastBuild = project.getLastBuild();
+    AbstractBuild<?, ?> lastCompletedBuild = project.getLastCompletedBuild();
+    StringBuilder sb = new StringBuilder(200);
+    sb.append(project.getFullName()).append(GraphConfigurationDetail.SEPARATOR);
+    sb.append(performanceReportNameFile).append(GraphConfigurationDetail.SEPARATOR);
+    sb.append(graphConf.getValue()).append(GraphConfigurationDetail.SEPARATOR);
+    sb.append(lastBuild == null ? 0 : lastBuild.number).append(GraphConfigurationDetail.SEPARATOR);
+    sb.append(lastCompletedBuild == null ? 0 : lastCompletedBuild.number).append(GraphConfigurationDetail.SEPARATOR);
+    sb.append(project.getBuilds().size());
+    return sb.toString();
+  }
+
+  /**
+   * Returns the trend of a report over the builds selected by the graph
+   * configuration, computing it in a single walk over the builds unless it was
+   * computed recently for another graph.
+   */
+  PerformanceTrend getTrend(GraphConfigurationDetail graphConf,
+      String performanceReportNameFile) {
+    return getTrend(graphConf, getTrendKey(graphConf,
+        performanceReportNameFile), performanceReportNameFile);
+  }
+
+  private PerformanceTrend getTrend(GraphConfigurationDetail graphConf,
+      String trendKey, String performanceReportNameFile) {
+    PerformanceTrend trend = PerformanceTrend.getCached(trendKey);
+    if (trend == null) {
+      List<? extends AbstractBuild<?, ?>> builds = getProject().getBuilds();
+      trend = PerformanceTrend.compute(builds,
+          getFirstAndLastBuild(graphConf, builds), performanceReportNameFile);
+      if (trend.isComplete()) {
+        PerformanceTrend.cache(trendKey, trend);
+      }
+    }
+    return trend;
+  }
+
+  /**
+   * @return how many test cases were requested with the <code>top</code>
+   *         parameter, {@link PerformanceTrend#MAX_TEST_CASES} by default
+   */
+  static int getTestCaseCount(StaplerRequest request) {
+    String top = request.getParameter("top");
+    if (top != null) {
+      try {
+        return Integer.parseInt(top);
+      } catch (NumberFormatException e) {
+        // fall back to the default count
+      }
+    }
+    return PerformanceTrend.MAX_TEST_CASES;
+  }
+
+  /**
+   * @return the width of the requested graph in pixels, which bounds the
+   *         number of builds worth plotting
+   */
+  private static int getGraphWidth(StaplerRequest request, int defaultWidth) {
+    String width = request.getParameter("width");
+    if (width != null) {
+      try {
+        return Integer.parseInt(width);
+      } catch (NumberFormatException e) {
+        // fall back to the default size, like ChartUtil does
+      }
+    }
+    return defaultWidth;
+  }
+
+  /**
+   * Sends a trend graph, caching it unless some builds of the trend could not
+   * be loaded in time, which the graph then mentions.
+   */
+  private void generateTrendGraph(StaplerRequest request,
+      StaplerResponse response, String graphKey, long lastModified,
+      PerformanceTrend trend, JFreeChart chart) throws IOException {
+    if (trend.isComplete()) {
+      TrendGraphCache.generateGraph(request, response, graphKey, lastModified,
+          chart, 400, 200);
+    } else {
+      chart.addSubtitle(new TextTitle(Messages.ProjectAction_MissingBuilds(
+          trend.getMissingBuilds().size())));
+      ChartUtil.generateGraph(request, response, chart, 400, 200);
+    }
+  }
+
+  /**
+   * @return when the trend graphs last changed, 0 if there is no completed build
+   */
+  private long getGraphLastModified() {
+    AbstractBuild<?, ?> lastCompletedBuild = project.getLastCompletedBuild();
+    if (lastCompletedBuild == null) {
+      return 0;
+    }
+    return lastCompletedBuild.getTimeInMillis() + lastCompletedBuild.getDuration();
+  }
+
   public Range all(List<?> builds) {
       return new Range(1, builds.size());
   }
@@ -792,33 +960,16 @@ public final class PerformanceProjectAction implements Action {
     return project;
   }
 
+  /**
+   * Gets the file names of the reports of the project, from its
+   * {@link PerformanceCatalog}, which is kept up to date as builds publish.
+   */
   public List<String> getPerformanceReportList() {
-    this.performanceReportList = new ArrayList<String>(0);
     if (null == this.project) {
+      this.performanceReportList = new ArrayList<String>(0);
       return performanceReportList;
     }
-    if (null == this.project.getSomeBuildWithWorkspace()) {
-      return performanceReportList;
-    }
-    File file = new File(this.project.getSomeBuildWithWorkspace().getRootDir(),
-        PerformanceReportMap.getPerformanceReportDirRelativePath());
-    if (!file.isDirectory()) {
-      return performanceReportList;
-    }
-
-    for (File entry : file.listFiles()) {
-      if (entry.isDirectory()) {
-        for (File e : entry.listFiles()) {
-          this.performanceReportList.add(e.getName());
-        }
-      } else {
-        this.performanceReportList.add(entry.getName());
-      }
-        
-    }
-
-    Collections.sort(performanceReportList);
-
+    this.performanceReportList = PerformanceCatalog.get(project).getReportFileNames();
     return this.performanceReportList;
   }
 
@@ -881,20 +1032,19 @@ public final class PerformanceProjectAction implements Action {
    */
   private Object createTrendReport(final StaplerRequest request) {
     String filename = getTrendReportFilename(request);
-    CategoryDataset dataSet = getTrendReportData(request, filename).build();
+    GraphConfigurationDetail graphConf = (GraphConfigurationDetail) createUserConfiguration(request);
     TrendReportDetail report = new TrendReportDetail(project, PLUGIN_NAME,
-        request, filename, dataSet);
+        request, filename, getTrend(graphConf, filename));
     return report;
   }
 
   private Object createTestsuiteReport(final StaplerRequest request, final StaplerResponse response){
 	  String filename = getTestSuiteReportFilename(request);
 	  	    
-	  List<? extends AbstractBuild<?, ?>> builds = getProject().getBuilds();
-	  Range buildsLimits = getFirstAndLastBuild(request, builds);
+	  GraphConfigurationDetail graphConf = (GraphConfigurationDetail) createUserConfiguration(request);
 	  
-	  TestSuiteReportDetail report = new TestSuiteReportDetail(project, PLUGIN_NAME,
-        request, filename, buildsLimits);
+	  TestSuiteReportDetail report = new TestSuiteReportDetail(this, PLUGIN_NAME,
+        request, filename, graphConf);
 	 	  
 	  return report;
   }
@@ -911,47 +1061,6 @@ public final class PerformanceProjectAction implements Action {
 	    return performanceReportPosition.getPerformanceReportPosition();
 	  }
 
-  private DataSetBuilder getTrendReportData(final StaplerRequest request,
-      String performanceReportNameFile) {
-
-    DataSetBuilder<String, NumberOnlyBuildLabel> dataSet = new DataSetBuilder<String, NumberOnlyBuildLabel>();
-    List<? extends AbstractBuild<?, ?>> builds = getProject().getBuilds();
-    Range buildsLimits = getFirstAndLastBuild(request, builds);
-
-    int nbBuildsToAnalyze = builds.size();
-    for (AbstractBuild<?, ?> currentBuild : builds) {
-      if (buildsLimits.in(nbBuildsToAnalyze)) {
-        NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(currentBuild);
-        PerformanceBuildAction performanceBuildAction = currentBuild.getAction(PerformanceBuildAction.class);
-        if (performanceBuildAction == null) {
-          continue;
-        }
-        PerformanceReport report = null;
-        report = performanceBuildAction.getPerformanceReportMap().getPerformanceReport(
-            performanceReportNameFile);
-        if (report == null) {
-          nbBuildsToAnalyze--;
-          continue;
-        }
-        dataSet.add(Math.round(report.getAverage()),
-            Messages.ProjectAction_Average(), label);
-        dataSet.add(Math.round(report.getMedian()),
-            Messages.ProjectAction_Median(), label);
-        dataSet.add(Math.round(report.get90Line()),
-            Messages.ProjectAction_Line90(), label);
-        dataSet.add(Math.round(report.getMin()),
-            Messages.ProjectAction_Minimum(), label);
-        dataSet.add(Math.round(report.getMax()),
-            Messages.ProjectAction_Maximum(), label);
-        dataSet.add(Math.round(report.errorPercent()),
-            Messages.ProjectAction_PercentageOfErrors(), label);
-        dataSet.add(Math.round(report.countErrors()),
-            Messages.ProjectAction_Errors(), label);
-      }
-      nbBuildsToAnalyze--;
-    }
-    return dataSet;
-  }
   public boolean ifSummarizerParserUsed(String filename) {
 
       boolean b = false;
@@ -1012,6 +1121,35 @@ public final class PerformanceProjectAction implements Action {
     	  }
     	  return false;
       }
+
+      /**
+       * Selects the builds within the range without looking at the others.
+       * Builds left out by the step are skipped on their number alone, before
+       * any of their actions is loaded.
+       * 
+       * @param builds
+       *            all the builds of the project, newest first
+       * @return the builds within the range, newest first
+       */
+      public <B extends AbstractBuild<?, ?>> List<B> getBuilds(List<B> builds) {
+          int size = builds.size();
+          int fromIndex = Math.max(size - last, 0);
+          int toIndex = Math.min(size - first + 1, size);
+          if (fromIndex >= toIndex) {
+              return Collections.emptyList();
+          }
+          List<B> inRange = builds.subList(fromIndex, toIndex);
+          if (step <= 1) {
+              return inRange;
+          }
+          List<B> stepped = new ArrayList<B>(inRange.size() / step + 1);
+          for (B build : inRange) {
+              if (includedByStep(build.number)) {
+                  stepped.add(build);
+              }
+          }
+          return stepped;
+      }
       
   }
 }
@@ -12,22 +12,100 @@ import hudson.tasks.BuildStepDescriptor;
 import hudson.tasks.BuildStepMonitor;
 import hudson.tasks.Publisher;
 import hudson.tasks.Recorder;
+import hudson.util.DaemonThreadFactory;
+import hudson.util.FormValidation;
+import hudson.util.IOException2;
+import net.sf.json.JSONObject;
 import org.kohsuke.stapler.DataBoundConstructor;
+import org.kohsuke.stapler.QueryParameter;
+import org.kohsuke.stapler.StaplerRequest;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class PerformancePublisher extends Recorder {
   @Extension
   public static class DescriptorImpl extends BuildStepDescriptor<Publisher> {
+
+    /**
+     * Memory the samples of a report may use while it is parsed, in
+     * megabytes. 0 for no limit.
+     */
+    private int heapBudget;
+
+    static final int DEFAULT_PARSE_SLOTS = 2;
+
+    /**
+     * As many as the builds of a trend loaded at the same time, so that the
+     * reports they need are parsed in parallel too.
+     */
+    static final int DEFAULT_VIEW_PARSE_SLOTS = BuildReportLoader.THREADS;
+
+    /**
+     * Number of reports parsed at the same time while publishing.
+     */
+    private int parseSlots = DEFAULT_PARSE_SLOTS;
+
+    /**
+     * Number of reports parsed at the same time to show past builds.
+     */
+    private int viewParseSlots = DEFAULT_VIEW_PARSE_SLOTS;
+
+    /**
+     * Memory all parses may reserve together, in megabytes. 0 for no limit.
+     */
+    private int parseMemory;
+
+    public DescriptorImpl() {
+      load();
+    }
+
+    @Override
+    public boolean configure(StaplerRequest req, JSONObject json)
+        throws FormException {
+      heapBudget = Math.max(json.optInt("heapBudget", 0), 0);
+      parseSlots = Math.max(json.optInt("parseSlots", DEFAULT_PARSE_SLOTS), 1);
+      viewParseSlots = Math.max(
+          json.optInt("viewParseSlots", DEFAULT_VIEW_PARSE_SLOTS), 1);
+      parseMemory = Math.max(json.optInt("parseMemory", 0), 0);
+      save();
+      ParseScheduler.configure(parseSlots, viewParseSlots, parseMemory);
+      return true;
+    }
+
+    public int getHeapBudget() {
+      return heapBudget;
+    }
+
+    public int getParseSlots() {
+      return parseSlots;
+    }
+
+    public int getViewParseSlots() {
+      return viewParseSlots;
+    }
+
+    public int getParseMemory() {
+      return parseMemory;
+    }
+
     @Override
     public String getDisplayName() {
       return Messages.Publisher_DisplayName();
@@ -42,12 +120,29 @@ public class PerformancePublisher extends Recorder {
       return PerformanceReportParserDescriptor.all();
     }
 
+    public UriThreshold.Metric[] getUriThresholdMetrics() {
+      return UriThreshold.Metric.values();
+    }
+
+    public FormValidation doCheckUriThresholdPattern(
+        @QueryParameter String value) {
+      String error = value == null || value.length() == 0 ? null
+          : UriThreshold.checkPattern(value);
+      return error == null ? FormValidation.ok()
+          : FormValidation.error(Messages.Publisher_InvalidPattern(error));
+    }
+
     @Override
     public boolean isApplicable(Class<? extends AbstractProject> jobType) {
       return true;
     }
   }
 
+  /**
+   * Number of regressions listed in the console.
+   */
+  private static final int MAX_REGRESSIONS_LOGGED = 10;
+
   private int errorFailedThreshold = 0;
 
   private int errorUnstableThreshold = 0;
@@ -63,18 +158,99 @@ public class PerformancePublisher extends Recorder {
    * Configured report parsers.
    */
   private List<PerformanceReportParser> parsers;
+
+  /**
+   * Configured per URI thresholds.
+   */
+  private List<UriThreshold> uriThresholds;
+
+  /**
+   * Highest increase of the 90% line of a URI against the baseline build
+   * tolerated before the build is set unstable, in percent. 0 to disable.
+   */
+  private double regressionThreshold;
+
+  /**
+   * Number of the build to compare against for regressions, or 0 for the last
+   * successful build.
+   */
+  private int regressionBaselineBuild;
+
+  /**
+   * Lowest number of requests per second of a report before the build fails.
+   * 0 to disable.
+   */
+  private double minThroughput;
+
+  /**
+   * Length in seconds of the windows the minimum throughput has to be
+   * sustained over, or 0 for the whole run.
+   */
+  private int throughputWindow;
+
+  /**
+   * Highest decrease of the throughput of a report or URI against the
+   * baseline build tolerated before the build fails, in percent. 0 to
+   * disable.
+   */
+  private double maxThroughputDrop;
+
+  /**
+   * Length in seconds of the sliding windows URIs are checked over, 0 to
+   * disable.
+   */
+  private int slaWindow;
+
+  /**
+   * Highest 99% line of a URI over any window before the build fails, in
+   * milliseconds. 0 to disable.
+   */
+  private long maxWindowLine99;
+
+  /**
+   * Highest percentage of errors of a URI over any window before the build
+   * fails. 0 to disable.
+   */
+  private double maxWindowErrorPercent;
   
-  
-@DataBoundConstructor
   public PerformancePublisher(int errorFailedThreshold,
       int errorUnstableThreshold,
       boolean modePerformancePerTestCase,
       List<? extends PerformanceReportParser> parsers) {
+    this(errorFailedThreshold, errorUnstableThreshold,
+        modePerformancePerTestCase, parsers, null, 0, 0, 0, 0, 0, 0, 0, 0);
+  }
+
+@DataBoundConstructor
+  public PerformancePublisher(int errorFailedThreshold,
+      int errorUnstableThreshold,
+      boolean modePerformancePerTestCase,
+      List<? extends PerformanceReportParser> parsers,
+      List<UriThreshold> uriThresholds,
+      double regressionThreshold,
+      int regressionBaselineBuild,
+      double minThroughput,
+      int throughputWindow,
+      double maxThroughputDrop,
+      int slaWindow,
+      long maxWindowLine99,
+      double maxWindowErrorPercent) {
     this.errorFailedThreshold = errorFailedThreshold;
     this.errorUnstableThreshold = errorUnstableThreshold;
     if (parsers == null)
       parsers = Collections.emptyList();
     this.parsers = new ArrayList<PerformanceReportParser>(parsers);
+    if (uriThresholds == null)
+      uriThresholds = Collections.emptyList();
+    this.uriThresholds = new ArrayList<UriThreshold>(uriThresholds);
+    this.regressionThreshold = Math.max(regressionThreshold, 0);
+    this.regressionBaselineBuild = Math.max(regressionBaselineBuild, 0);
+    this.minThroughput = Math.max(minThroughput, 0);
+    this.throughputWindow = Math.max(throughputWindow, 0);
+    this.maxThroughputDrop = Math.max(maxThroughputDrop, 0);
+    this.slaWindow = Math.max(slaWindow, 0);
+    this.maxWindowLine99 = Math.max(maxWindowLine99, 0);
+    this.maxWindowErrorPercent = Math.max(maxWindowErrorPercent, 0);
     this.modePerformancePerTestCase = modePerformancePerTestCase;
   }
 
@@ -91,6 +267,11 @@ public class PerformancePublisher extends Recorder {
     return new PerformanceProjectAction(project);
   }
 
+  @Override
+  public DescriptorImpl getDescriptor() {
+    return (DescriptorImpl) super.getDescriptor();
+  }
+
   public BuildStepMonitor getRequiredMonitorService() {
     return BuildStepMonitor.BUILD;
   }
@@ -99,6 +280,42 @@ public class PerformancePublisher extends Recorder {
     return parsers;
   }
 
+  public List<UriThreshold> getUriThresholds() {
+    return uriThresholds;
+  }
+
+  public double getRegressionThreshold() {
+    return regressionThreshold;
+  }
+
+  public int getRegressionBaselineBuild() {
+    return regressionBaselineBuild;
+  }
+
+  public double getMinThroughput() {
+    return minThroughput;
+  }
+
+  public int getThroughputWindow() {
+    return throughputWindow;
+  }
+
+  public double getMaxThroughputDrop() {
+    return maxThroughputDrop;
+  }
+
+  public int getSlaWindow() {
+    return slaWindow;
+  }
+
+  public long getMaxWindowLine99() {
+    return maxWindowLine99;
+  }
+
+  public double getMaxWindowErrorPercent() {
+    return maxWindowErrorPercent;
+  }
+
   /**
    * <p>
    * Delete the date suffix appended to the Performance result files by the
@@ -170,9 +387,9 @@ public class PerformancePublisher extends Recorder {
   }
 
   @Override
-  public boolean perform(AbstractBuild<?, ?> build, Launcher launcher,
-      BuildListener listener) throws InterruptedException, IOException {
-    PrintStream logger = listener.getLogger();
+  public boolean perform(final AbstractBuild<?, ?> build, Launcher launcher,
+      final BuildListener listener) throws InterruptedException, IOException {
+    final PrintStream logger = listener.getLogger();
 
     if (errorUnstableThreshold >= 0 && errorUnstableThreshold <= 100) {
       logger.println("Performance: Percentage of errors greater or equal than "
@@ -196,17 +413,69 @@ public class PerformancePublisher extends Recorder {
         parsers);
     build.addAction(a);
 
+    // hand the parsed reports over to the build action, so neither the
+    // threshold evaluation below nor the first view parses them again.
+    PerformanceReportMap reportMap = new PerformanceReportMap(a);
+    a.setPerformanceReportMap(new SoftReference<PerformanceReportMap>(
+        reportMap));
+    // pages of the running build see no summaries until all the reports are
+    // summarized below.
+    a.setSummaries(new LinkedHashMap<String, PerformanceReportSummary>());
+    Map<String, PerformanceReportSummary> summaries = new LinkedHashMap<String, PerformanceReportSummary>();
+
+    // locate the reports of all the parsers, then copy and parse them
+    // concurrently, up to the first parser that finds none, and evaluate the
+    // results in the order of the parsers so the outcome doesn't depend on
+    // which parser finishes first.
+    final PerformanceDiagnostics.Timings timings = new PerformanceDiagnostics.Timings();
+    final FilePath workspace = build.getWorkspace();
+    List<Callable<List<FilePath>>> locators = new ArrayList<Callable<List<FilePath>>>();
+    for (final PerformanceReportParser parser : parsers) {
+      locators.add(new Callable<List<FilePath>>() {
+
+        public List<FilePath> call() throws IOException, InterruptedException {
+          long start = PerformanceDiagnostics.start();
+          List<FilePath> files = locatePerformanceReports(workspace,
+              parser.glob);
+          PerformanceDiagnostics.record("Locate reports", start, 0, 0,
+              timings);
+          return files;
+        }
+      });
+    }
+    List<List<FilePath>> locatedFiles = invokeAll(locators);
+
+    List<Callable<Collection<PerformanceReport>>> pipelines = new ArrayList<Callable<Collection<PerformanceReport>>>();
+    for (int i = 0; i < parsers.size() && !locatedFiles.get(i).isEmpty(); i++) {
+      final PerformanceReportParser parser = parsers.get(i);
+      final List<FilePath> files = locatedFiles.get(i);
+      pipelines.add(new Callable<Collection<PerformanceReport>>() {
+
+        public Collection<PerformanceReport> call() throws IOException,
+            InterruptedException {
+          List<File> localReports = copyReportsToMaster(build, logger, files,
+              parser.getDescriptor().getDisplayName(), timings);
+          return ParseScheduler.parse(ParseScheduler.Lane.PUBLISH, parser,
+              build, localReports, listener, timings);
+        }
+      });
+    }
+    List<Collection<PerformanceReport>> parsed = invokeAll(pipelines);
+
     double thresholdTolerance = 0.00000001;
-    for (PerformanceReportParser parser : parsers) {
+    for (int i = 0; i < parsers.size(); i++) {
+      PerformanceReportParser parser = parsers.get(i);
       String glob = parser.glob;
       logger.println("Performance: Recording " + parser.getReportName()
           + " reports '" + glob + "'");
 
-      List<FilePath> files = locatePerformanceReports(build.getWorkspace(),
-          glob);
+      List<FilePath> files = locatedFiles.get(i);
 
       if (files.isEmpty()) {
+        a.setSummaries(summaries);
         if (build.getResult().isWorseThan(Result.UNSTABLE)) {
+          recordSummaries(build, a);
+          logger.println("Performance: Timings: " + timings);
           return true;
         }
         build.setResult(Result.FAILURE);
@@ -214,17 +483,37 @@ public class PerformancePublisher extends Recorder {
             + " files matching '" + glob
             + "' have been found. Has the report generated?. Setting Build to "
             + build.getResult());
+        recordSummaries(build, a);
+        logger.println("Performance: Timings: " + timings);
         return true;
       }
 
-      List<File> localReports = copyReportsToMaster(build, logger, files,
-          parser.getDescriptor().getDisplayName());
-      Collection<PerformanceReport> parsedReports = parser.parse(build,
-          localReports, listener);
+      Collection<PerformanceReport> parsedReports = parsed.get(i);
+      reportMap.addAll(parsedReports);
 
       // mark the build as unstable or failure depending on the outcome.
       for (PerformanceReport r : parsedReports) {
-        r.setBuildAction(a);
+        if (r.isAggregated()) {
+          logger.println("Performance: File " + r.getReportFileName()
+              + " went past the heap budget of "
+              + getDescriptor().getHeapBudget()
+              + " MB, only the aggregates of its " + r.size()
+              + " samples were kept");
+        } else {
+          logger.println("Performance: File " + r.getReportFileName()
+              + " kept its " + r.size() + " samples in memory");
+        }
+        int outliers = r.getThroughputOutliers();
+        if (outliers > 0) {
+          logger.println("Performance: File " + r.getReportFileName()
+              + " has " + outliers + " samples more than "
+              + ThroughputCounter.MAX_SPAN_SECONDS
+              + " seconds away from the others, left out of its throughput");
+        }
+        long start = PerformanceDiagnostics.start();
+        summaries.put(r.getReportFileName(), new PerformanceReportSummary(r));
+        PerformanceDiagnostics.record("Summarize reports", start, r.size(), 0,
+            timings);
         double errorPercent = r.errorPercent();
         Result result = Result.SUCCESS;
         if (errorFailedThreshold >= 0 && errorPercent - errorFailedThreshold > thresholdTolerance) {
@@ -243,13 +532,275 @@ public class PerformancePublisher extends Recorder {
             + build.getResult());
       }
     }
+    a.setSummaries(summaries);
+    long start = PerformanceDiagnostics.start();
+    evaluateUriThresholds(build, logger, a);
+    checkRegressions(build, logger, a);
+    checkThroughput(build, logger, a, reportMap);
+    checkWindows(build, logger, reportMap);
+    PerformanceDiagnostics.record("Evaluate thresholds", start, 0, 0, timings);
+    recordSummaries(build, a);
+    logger.println("Performance: Timings: " + timings);
 
     return true;
   }
 
-  private List<File> copyReportsToMaster(AbstractBuild<?, ?> build,
-      PrintStream logger, List<FilePath> files, String parserDisplayName)
+  /**
+   * Evaluates the per URI thresholds against the reports of the build, and
+   * keeps their outcomes with it.
+   */
+  private void evaluateUriThresholds(AbstractBuild<?, ?> build,
+      PrintStream logger, PerformanceBuildAction a) {
+    if (uriThresholds.isEmpty()) {
+      return;
+    }
+    List<UriReportSummary> uriSummaries = new ArrayList<UriReportSummary>();
+    for (PerformanceReportSummary summary : a.getSummaries().values()) {
+      uriSummaries.addAll(summary.getUriSummaries());
+    }
+    List<UriThreshold> validThresholds = new ArrayList<UriThreshold>();
+    for (UriThreshold threshold : uriThresholds) {
+      String error = UriThreshold.checkPattern(threshold.getPattern());
+      if (error == null) {
+        validThresholds.add(threshold);
+      } else {
+        logger.println("Performance: Threshold " + threshold.getDescription()
+            + " skipped, its pattern is invalid: " + error);
+      }
+    }
+    List<UriThreshold.Outcome> outcomes = UriThreshold.evaluate(
+        validThresholds, uriSummaries);
+    for (UriThreshold.Outcome outcome : outcomes) {
+      Result result = Result.SUCCESS;
+      if (!outcome.isPassed()) {
+        result = Result.fromString(outcome.getResult());
+        if (result.isWorseThan(build.getResult())) {
+          build.setResult(result);
+        }
+      }
+      logger.println("Performance: Threshold " + outcome + " [" + result
+          + "]. Build status is: " + build.getResult());
+    }
+    a.setThresholdOutcomes(outcomes);
+  }
+
+  /**
+   * Compares the URIs of the build with the baseline build, and sets the build
+   * unstable if any regressed more than tolerated.
+   */
+  private void checkRegressions(AbstractBuild<?, ?> build, PrintStream logger,
+      PerformanceBuildAction a) {
+    if (regressionThreshold <= 0) {
+      return;
+    }
+    BaselineResolver resolver = getRegressionBaselineResolver(build);
+    AbstractBuild<?, ?> baseline = resolver.getBaselineBuild();
+    if (baseline == null) {
+      logger.println("Performance: No baseline build to check regressions against");
+      return;
+    }
+    List<RegressionGate.Regression> regressions = new RegressionGate(
+        regressionThreshold).compare(a.getSummaries(), resolver.getSummaries());
+    if (regressions.isEmpty()) {
+      logger.println("Performance: No 90% line regressed more than "
+          + regressionThreshold + "% against " + baseline.getDisplayName());
+      return;
+    }
+    logger.println("Performance: " + regressions.size()
+        + " URIs regressed more than " + regressionThreshold + "% against "
+        + baseline.getDisplayName() + ", the worst being:");
+    for (RegressionGate.Regression regression : regressions.subList(0,
+        Math.min(regressions.size(), MAX_REGRESSIONS_LOGGED))) {
+      logger.println("Performance:   " + regression);
+    }
+    if (Result.UNSTABLE.isWorseThan(build.getResult())) {
+      build.setResult(Result.UNSTABLE);
+    }
+    logger.println("Performance: Build status is: " + build.getResult());
+  }
+
+  /**
+   * @return the resolver of the build regressions are checked against
+   */
+  private BaselineResolver getRegressionBaselineResolver(
+      AbstractBuild<?, ?> build) {
+    return regressionBaselineBuild > 0 ? new BaselineResolver(build,
+        regressionBaselineBuild) : new BaselineResolver(build, 0, true);
+  }
+
+  /**
+   * Fails the build if the throughput of any report is below the minimum, or
+   * dropped more than tolerated against the baseline build.
+   */
+  private void checkThroughput(AbstractBuild<?, ?> build, PrintStream logger,
+      PerformanceBuildAction a, PerformanceReportMap reportMap) {
+    boolean failed = false;
+    if (minThroughput > 0) {
+      for (PerformanceReport r : reportMap.getPerformanceListOrdered()) {
+        double throughput = throughputWindow > 0 ? r.getWorstThroughput(throughputWindow)
+            : a.getSummary(r.getReportFileName()).getThroughput();
+        boolean below = throughput < minThroughput;
+        logger.println("Performance: File " + r.getReportFileName()
+            + (throughputWindow > 0 ? " sustained " : " reported ")
+            + String.format("%.1f", throughput) + " requests per second"
+            + (throughputWindow > 0 ? " over its worst " + throughputWindow
+                + " seconds" : "") + (below ? ", below" : ", above")
+            + " the minimum of " + minThroughput);
+        failed |= below;
+      }
+    }
+    if (maxThroughputDrop > 0) {
+      BaselineResolver resolver = getRegressionBaselineResolver(build);
+      AbstractBuild<?, ?> baseline = resolver.getBaselineBuild();
+      if (baseline == null) {
+        logger.println("Performance: No baseline build to check the throughput against");
+      } else {
+        List<ThroughputGate.Drop> drops = new ThroughputGate(maxThroughputDrop).compare(
+            a.getSummaries(), resolver.getSummaries());
+        if (drops.isEmpty()) {
+          logger.println("Performance: No throughput dropped more than "
+              + maxThroughputDrop + "% against " + baseline.getDisplayName());
+        } else {
+          logger.println("Performance: " + drops.size()
+              + " throughputs dropped more than " + maxThroughputDrop
+              + "% against " + baseline.getDisplayName() + ", the worst being:");
+          for (ThroughputGate.Drop drop : drops.subList(0, Math.min(
+              drops.size(), MAX_REGRESSIONS_LOGGED))) {
+            logger.println("Performance:   " + drop);
+          }
+          failed = true;
+        }
+      }
+    }
+    if (failed) {
+      build.setResult(Result.FAILURE);
+      logger.println("Performance: Build status is: " + build.getResult());
+    }
+  }
+
+  /**
+   * Fails the build if the 99% line or the percentage of errors of any URI
+   * exceeds its limit over any sliding window.
+   */
+  private void checkWindows(AbstractBuild<?, ?> build, PrintStream logger,
+      PerformanceReportMap reportMap) {
+    if (slaWindow <= 0 || (maxWindowLine99 <= 0 && maxWindowErrorPercent <= 0)) {
+      return;
+    }
+    boolean failed = false;
+    for (PerformanceReport r : reportMap.getPerformanceListOrdered()) {
+      for (UriReport uriReport : r.getUriListOrdered()) {
+        SlidingWindowLatency windows = uriReport.getSlidingWindows(slaWindow);
+        if (windows.getOutliers() > 0) {
+          logger.println("Performance: File " + r.getReportFileName() + " "
+              + uriReport.getUri() + " has " + windows.getOutliers()
+              + " samples more than " + ThroughputCounter.MAX_SPAN_SECONDS
+              + " seconds away from the others, left out of its windows");
+        }
+        int worst = windows.getWorstLine99Window();
+        if (maxWindowLine99 > 0 && worst >= 0
+            && windows.getLine99Series()[worst] > maxWindowLine99) {
+          logger.println("Performance: File " + r.getReportFileName() + " "
+              + uriReport.getUri() + " had a 99% line of "
+              + windows.getLine99Series()[worst] + " ms over the "
+              + windows.getWindowSeconds() + " seconds from "
+              + new Date(windows.getWindowStart(worst)) + ", above "
+              + maxWindowLine99 + " ms");
+          failed = true;
+        }
+        worst = windows.getWorstErrorPercentWindow();
+        if (maxWindowErrorPercent > 0 && worst >= 0
+            && windows.getErrorPercentSeries()[worst] > maxWindowErrorPercent) {
+          logger.println("Performance: File " + r.getReportFileName() + " "
+              + uriReport.getUri() + " had "
+              + String.format("%.1f", windows.getErrorPercentSeries()[worst])
+              + "% of errors over the " + windows.getWindowSeconds()
+              + " seconds from " + new Date(windows.getWindowStart(worst))
+              + ", above " + maxWindowErrorPercent + "%");
+          failed = true;
+        }
+      }
+    }
+    if (failed) {
+      build.setResult(Result.FAILURE);
+    }
+    logger.println("Performance: "
+        + (failed ? "Some URIs exceeded their limits over a "
+            : "No URI exceeded its limits over any ") + slaWindow
+        + " seconds window. Build status is: " + build.getResult());
+  }
+
+  /**
+   * Runs the tasks concurrently, one thread each, and waits for all of them.
+   *
+   * @return the results of the tasks, in the order of the tasks
+   */
+  private static <T> List<T> invokeAll(List<Callable<T>> tasks)
       throws IOException, InterruptedException {
+    List<T> results = new ArrayList<T>(tasks.size());
+    if (tasks.isEmpty()) {
+      return results;
+    }
+    if (tasks.size() == 1) {
+      try {
+        results.add(tasks.get(0).call());
+      } catch (IOException e) {
+        throw e;
+      } catch (InterruptedException e) {
+        throw e;
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new IOException2(e);
+      }
+      return results;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(tasks.size(),
+        new DaemonThreadFactory());
+    try {
+      for (Future<T> future : executor.invokeAll(tasks)) {
+        try {
+          results.add(future.get());
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof IOException) {
+            throw (IOException) cause;
+          }
+          if (cause instanceof InterruptedException) {
+            throw (InterruptedException) cause;
+          }
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          }
+          if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw new IOException2(cause);
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    return results;
+  }
+
+  /**
+   * Compares the summaries of the build with its baseline and adds their URIs
+   * to the catalog of the project.
+   */
+  private void recordSummaries(AbstractBuild<?, ?> build,
+      PerformanceBuildAction a) {
+    a.compareWithBaseline();
+    PerformanceCatalog.get(build.getProject()).record(build,
+        a.getSummaries().values());
+  }
+
+  private List<File> copyReportsToMaster(AbstractBuild<?, ?> build,
+      PrintStream logger, List<FilePath> files, String parserDisplayName,
+      PerformanceDiagnostics.Timings timings) throws IOException,
+      InterruptedException {
+    long start = PerformanceDiagnostics.start();
+    long bytes = 0;
     List<File> localReports = new ArrayList<File>();
     for (FilePath src : files) {
       final File localReport = getPerformanceReport(build, parserDisplayName,
@@ -261,7 +812,9 @@ public class PerformancePublisher extends Recorder {
       }
       src.copyTo(new FilePath(localReport));
       localReports.add(localReport);
+      bytes += localReport.length();
     }
+    PerformanceDiagnostics.record("Copy reports", start, 0, bytes, timings);
     return localReports;
   }
 
@@ -269,6 +822,8 @@ public class PerformancePublisher extends Recorder {
     // data format migration
     if (parsers == null)
       parsers = new ArrayList<PerformanceReportParser>();
+    if (uriThresholds == null)
+      uriThresholds = new ArrayList<UriThreshold>();
     if (filename != null) {
       parsers.add(new JMeterParser(filename));
       filename = null;
@@ -8,7 +8,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,6 +27,19 @@ public class PerformanceReport extends AbstractReport implements
   private HttpSample httpSample;
 
   private String reportFileName = null;
+
+  private long keptSamples;
+
+  /**
+   * Number of samples this report reserved in the {@link SampleBudget}.
+   */
+  private long reservedSamples;
+
+  /**
+   * Whether the report went past the {@link SampleBudget}, so that its URIs
+   * only keep the aggregates of their samples.
+   */
+  private boolean aggregated;
  
 
   /**
@@ -35,7 +47,10 @@ public class PerformanceReport extends AbstractReport implements
    */
   private final Map<String, UriReport> uriReportMap = new LinkedHashMap<String, UriReport>();
   
-  private PerformanceReport lastBuildReport;
+  /**
+   * Summary of this report in the baseline build, looked up on first use.
+   */
+  private PerformanceReportSummary lastBuildReport;
 
   public void addSample(HttpSample pHttpSample) throws SAXException {
     String uri = pHttpSample.getUri();
@@ -48,10 +63,30 @@ public class PerformanceReport extends AbstractReport implements
     UriReport uriReport = uriReportMap.get(staplerUri);
     if (uriReport == null) {
       uriReport = new UriReport(this, staplerUri, uri);
+      if (aggregated) {
+        uriReport.aggregate();
+      }
       uriReportMap.put(staplerUri, uriReport);
     }
     uriReport.addHttpSample(pHttpSample);
-    
+    if (!aggregated && ++keptSamples > reservedSamples) {
+      if (SampleBudget.reserve(reservedSamples)) {
+        reservedSamples += SampleBudget.BLOCK;
+        return;
+      }
+      for (UriReport currentReport : uriReportMap.values()) {
+        currentReport.aggregate();
+      }
+      aggregated = true;
+    }
+  }
+
+  /**
+   * @return whether the samples went past the {@link SampleBudget}, so that
+   *         only their aggregates are kept
+   */
+  public boolean isAggregated() {
+    return aggregated;
   }
 
   public int compareTo(PerformanceReport jmReport) {
@@ -96,60 +131,65 @@ public class PerformanceReport extends AbstractReport implements
   }
 
   public long get90Line() {
-    long result = 0;
-    int size = size();
-    if (size != 0) {
-      long average = 0;
-      List<HttpSample> allSamples = new ArrayList<HttpSample>();
-      for (UriReport currentReport : uriReportMap.values()) {
-        allSamples.addAll(currentReport.getHttpSampleList());
-      }
-      Collections.sort(allSamples);
-      result = allSamples.get((int) (allSamples.size() * .9)).getDuration();
-    }
-    return result;
+    return getLine(.9);
   }
 
   public long getMedian() {
+    return getLine(.5);
+  }
+
+  /**
+   * @return the duration of the sample at the given fraction of all the
+   *         samples sorted by duration, 0 if there are none
+   */
+  private long getLine(double fraction) {
     long result = 0;
     int size = size();
     if (size != 0) {
-      long average = 0;
+      if (aggregated) {
+        List<LatencyHistogram> histograms = new ArrayList<LatencyHistogram>();
+        for (UriReport currentReport : uriReportMap.values()) {
+          histograms.add(currentReport.getHistogram());
+        }
+        return LatencyHistogram.merge(histograms).getValueAtPercentile(
+            fraction * 100);
+      }
       List<HttpSample> allSamples = new ArrayList<HttpSample>();
       for (UriReport currentReport : uriReportMap.values()) {
         allSamples.addAll(currentReport.getHttpSampleList());
       }
       Collections.sort(allSamples);
-      result = allSamples.get((int) (allSamples.size() * .5)).getDuration();
+      result = allSamples.get((int) (allSamples.size() * fraction)).getDuration();
     }
     return result;
   }
 
   public double getThrougput() {
-    double result = 0;
-    int size = size();
-    if (size != 0) {
-      List<HttpSample> allSamples = new ArrayList<HttpSample>();
-      for (UriReport currentReport : uriReportMap.values()) {
-        allSamples.addAll(currentReport.getHttpSampleList());
-      }
-      Collections.sort(allSamples, new Comparator<HttpSample>() {
-	
-		public int compare(HttpSample o1, HttpSample o2) {
-			return (int) (o1.getDate().getTime() - o2.getDate().getTime());
-		}
-      });
-      if (size == 1) {
-    	  // only one request sent in duration of the single sample
-    	  result = (double)1*1000 / allSamples.get(0).getDuration();
-      } else if (size > 1) {
-        long time = allSamples.get(size -1).getDate().getTime() - allSamples.get(1).getDate().getTime();
-        result = (double)(size -1)*1000 / time;
-      } else {
-    	  result = 0;
-      }
+    return countThroughput().getRate();
+  }
+
+  /**
+   * @return the lowest number of requests per second sustained over any
+   *         window of the given number of seconds
+   */
+  public double getWorstThroughput(int windowSeconds) {
+    return countThroughput().getWorstRate(windowSeconds);
+  }
+
+  /**
+   * @return the number of samples left out of the throughput for being too
+   *         far in time from the others
+   */
+  public int getThroughputOutliers() {
+    return countThroughput().getOutliers();
+  }
+
+  private ThroughputCounter countThroughput() {
+    ThroughputCounter counter = new ThroughputCounter();
+    for (UriReport currentReport : uriReportMap.values()) {
+      currentReport.countThroughput(counter);
     }
-    return result;
+    return counter;
   }
 
   public double getAverageBytesTransferred() {
@@ -240,19 +280,18 @@ public class PerformanceReport extends AbstractReport implements
     return size;
   }
   
-  public void setLastBuildReport( PerformanceReport lastBuildReport ) {
-    Map<String, UriReport> lastBuildUriReportMap = lastBuildReport.getUriReportMap();
-    for (Map.Entry<String, UriReport> item : uriReportMap.entrySet()) {
-        UriReport lastBuildUri = lastBuildUriReportMap.get( item.getKey() );
-        if ( lastBuildUri != null ) {
-            item.getValue().addLastBuildUriReport( lastBuildUri );
-        } else {
-        }
+  PerformanceReportSummary getLastBuildReport() {
+    if (lastBuildReport == null && buildAction != null) {
+      PerformanceReportMap reportMap = buildAction.getPerformanceReportMap();
+      if (reportMap != null) {
+        lastBuildReport = reportMap.getBaselineSummary(reportFileName);
+      }
     }
-    this.lastBuildReport = lastBuildReport;
+    return lastBuildReport;
   }
   
   public long getAverageDiff() {
+      PerformanceReportSummary lastBuildReport = getLastBuildReport();
       if ( lastBuildReport == null ) {
           return 0;
       }
@@ -260,6 +299,7 @@ public class PerformanceReport extends AbstractReport implements
   }
   
   public long getMedianDiff() {
+      PerformanceReportSummary lastBuildReport = getLastBuildReport();
       if ( lastBuildReport == null ) {
           return 0;
       }
@@ -267,6 +307,7 @@ public class PerformanceReport extends AbstractReport implements
   }
   
   public double getErrorPercentDiff() {
+      PerformanceReportSummary lastBuildReport = getLastBuildReport();
       if ( lastBuildReport == null ) {
           return 0;
       }
@@ -278,6 +319,7 @@ public class PerformanceReport extends AbstractReport implements
   }
     
   public int getSizeDiff() {
+      PerformanceReportSummary lastBuildReport = getLastBuildReport();
       if ( lastBuildReport == null ) {
           return 0;
       }
@@ -6,12 +6,14 @@ import hudson.model.ModelObject;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,8 +21,6 @@ import java.util.StringTokenizer;
 
 import hudson.model.TaskListener;
 import hudson.util.ChartUtil;
-import hudson.util.ChartUtil.NumberOnlyBuildLabel;
-import hudson.util.DataSetBuilder;
 import java.io.FilenameFilter;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
@@ -41,9 +41,17 @@ public class PerformanceReportMap implements ModelObject {
      */
     private Map<String, PerformanceReport> performanceReportMap = new LinkedHashMap<String, PerformanceReport>();
     private static final String PERFORMANCE_REPORTS_DIRECTORY = "performance-reports";
-    
-    private static AbstractBuild<?, ?> currentBuild = null;
-        
+    /**
+     * How many builds the graphs of a build look back at.
+     */
+    private static final int HISTORY_DEPTH = Integer.getInteger(
+            PerformanceReportMap.class.getName() + ".historyDepth", 50);
+    /**
+     * Summaries of the build this one is compared against, resolved on the
+     * first diff lookup.
+     */
+    private transient volatile Map<String, PerformanceReportSummary> baselineSummaries;
+
     /**
      * Parses the reports and build a {@link PerformanceReportMap}.
      *
@@ -64,7 +72,15 @@ public class PerformanceReportMap implements ModelObject {
         }, null);
     }
 
-    private void addAll(Collection<PerformanceReport> reports) {
+    /**
+     * Creates an empty {@link PerformanceReportMap} to be filled with reports
+     * that have already been parsed, typically by {@link PerformancePublisher}.
+     */
+    PerformanceReportMap(final PerformanceBuildAction buildAction) {
+        this.buildAction = buildAction;
+    }
+
+    void addAll(Collection<PerformanceReport> reports) {
         for (PerformanceReport r : reports) {
             r.setBuildAction(buildAction);
             performanceReportMap.put(r.getReportFileName(), r);
@@ -90,6 +106,22 @@ public class PerformanceReportMap implements ModelObject {
         return listPerformance;
     }
 
+    /**
+     * Gets the summaries of the reports of this build ordered by report file
+     * name, with their differences to the baseline build.
+     */
+    public List<PerformanceReportSummary> getSummaryListOrdered() {
+        List<PerformanceReportSummary> listSummary = new ArrayList<PerformanceReportSummary>(
+                buildAction.getComparedSummaries().values());
+        Collections.sort(listSummary, new Comparator<PerformanceReportSummary>() {
+
+            public int compare(PerformanceReportSummary s1, PerformanceReportSummary s2) {
+                return s1.getReportFileName().compareTo(s2.getReportFileName());
+            }
+        });
+        return listSummary;
+    }
+
     public Map<String, PerformanceReport> getPerformanceReportMap() {
         return performanceReportMap;
     }
@@ -179,76 +211,48 @@ public class PerformanceReportMap implements ModelObject {
     public void doRespondingTimeGraph(StaplerRequest request,
             StaplerResponse response) throws IOException {
         String parameter = request.getParameter("performanceReportPosition");
-        AbstractBuild<?, ?> previousBuild = getBuild();
-        final Map<AbstractBuild<?, ?>, Map<String, PerformanceReport>> buildReports = new LinkedHashMap<AbstractBuild<?, ?>, Map<String, PerformanceReport>>();
-        while (previousBuild != null) {
-            final AbstractBuild<?, ?> currentBuild = previousBuild;
-            parseReports(currentBuild, TaskListener.NULL, new PerformanceReportCollector() {
-
-                public void addAll(Collection<PerformanceReport> parse) {
-                    for (PerformanceReport performanceReport : parse) {
-                        if (buildReports.get(currentBuild) == null) {
-                            Map<String, PerformanceReport> map = new LinkedHashMap<String, PerformanceReport>();
-                            buildReports.put(currentBuild, map);
-                        }
-                        buildReports.get(currentBuild).put(performanceReport.getReportFileName(), performanceReport);
-                    }
-                }
-            }, parameter);
-            previousBuild = previousBuild.getPreviousBuild();
-        }
-        //Now we should have the data necessary to generate the graphs!
-        DataSetBuilder<String, NumberOnlyBuildLabel> dataSetBuilderAverage = new DataSetBuilder<String, NumberOnlyBuildLabel>();
-        for (AbstractBuild<?, ?> currentBuild : buildReports.keySet()) {
-            NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(currentBuild);
-            PerformanceReport report = buildReports.get(currentBuild).get(parameter);
-            dataSetBuilderAverage.add(report.getAverage(), Messages.ProjectAction_Average(), label);
+        long start = PerformanceDiagnostics.start();
+        try {
+            ChartUtil.generateGraph(request, response,
+                    PerformanceProjectAction.createRespondingTimeChart(getHistory(parameter).getAverageDataSet().build()), 400, 200);
+        } finally {
+            PerformanceDiagnostics.record("Build responding time graph", start);
         }
-        ChartUtil.generateGraph(request, response,
-                PerformanceProjectAction.createRespondingTimeChart(dataSetBuilderAverage.build()), 400, 200);
     }
 
     public void doSummarizerGraph(StaplerRequest request,
             StaplerResponse response) throws IOException {
         String parameter = request.getParameter("performanceReportPosition");
-        AbstractBuild<?, ?> previousBuild = getBuild();
-        final Map<AbstractBuild<?, ?>, Map<String, PerformanceReport>> buildReports = new LinkedHashMap<AbstractBuild<?, ?>, Map<String, PerformanceReport>>();
-
-        while (previousBuild != null ) {
-            final AbstractBuild<?, ?> currentBuild = previousBuild;
-            parseReports(currentBuild, TaskListener.NULL, new PerformanceReportCollector() {
-
-                public void addAll(Collection<PerformanceReport> parse) {
-                    for (PerformanceReport performanceReport : parse) {
-                        if (buildReports.get(currentBuild) == null) {
-                            Map<String, PerformanceReport> map = new LinkedHashMap<String, PerformanceReport>();
-                            buildReports.put(currentBuild, map);
-                        }
-                        buildReports.get(currentBuild).put(performanceReport.getReportFileName(), performanceReport);
-                     }
-                }
-        }, parameter);
-        previousBuild = previousBuild.getPreviousBuild();
+        long start = PerformanceDiagnostics.start();
+        try {
+            ChartUtil.generateGraph(request, response,
+                    PerformanceProjectAction.createSummarizerChart(getHistory(parameter).getSummarizerDataSet().build(),"ms",Messages.ProjectAction_RespondingTime()), 400, 200);
+        } finally {
+            PerformanceDiagnostics.record("Build summarizer graph", start);
         }
-       DataSetBuilder<NumberOnlyBuildLabel,String > dataSetBuilderSummarizer = new DataSetBuilder<NumberOnlyBuildLabel, String>();
-       for (AbstractBuild<?, ?> currentBuild : buildReports.keySet()) {
-           NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(currentBuild);
-           PerformanceReport report = buildReports.get(currentBuild).get(parameter);
-
-           //Now we should have the data necessary to generate the graphs!
-           for (String key:report.getUriReportMap().keySet()) {
-               Long methodAvg=report.getUriReportMap().get(key).getHttpSampleList().get(0).getDuration();
-               dataSetBuilderSummarizer.add(methodAvg, label, key);
-           };
-       }
-       ChartUtil.generateGraph(request, response,
-                PerformanceProjectAction.createSummarizerChart(dataSetBuilderSummarizer.build(),"ms",Messages.ProjectAction_RespondingTime()), 400, 200);
     }
 
-
-
-
-
+    /**
+     * Gets the trend of a report over this build and at most
+     * {@link #HISTORY_DEPTH} builds, from the summaries stored with them.
+     */
+    private PerformanceTrend getHistory(String performanceReportNameFile) {
+        AbstractBuild<?, ?> build = getBuild();
+        StringBuilder sb = new StringBuilder(100);
+        sb.append(build.getProject().getFullName()).append(GraphConfigurationDetail.SEPARATOR);
+        sb.append(performanceReportNameFile).append(GraphConfigurationDetail.SEPARATOR);
+        sb.append(build.number).append(GraphConfigurationDetail.SEPARATOR);
+        sb.append(HISTORY_DEPTH);
+        String key = sb.toString();
+        PerformanceTrend trend = PerformanceTrend.getCached(key);
+        if (trend == null) {
+            trend = PerformanceTrend.computeHistory(build, HISTORY_DEPTH, performanceReportNameFile);
+            if (trend.isComplete()) {
+                PerformanceTrend.cache(key, trend);
+            }
+        }
+        return trend;
+    }
 
     private void parseReports(AbstractBuild<?, ?> build, TaskListener listener, PerformanceReportCollector collector, final String filename) throws IOException {
         File repo = new File(build.getRootDir(),
@@ -263,8 +267,8 @@ public class PerformanceReportMap implements ModelObject {
         });
         // this may fail, if the build itself failed, we need to recover gracefully
         if (files != null) {
-            addAll(new JMeterParser("").parse(build,
-                    Arrays.asList(files), listener));
+            addAll(parse(new JMeterParser(""), build, Arrays.asList(files),
+                    listener));
         }
 
         // otherwise subdirectory name designates the parser ID.
@@ -291,47 +295,43 @@ public class PerformanceReportMap implements ModelObject {
                             return false;
                         }
                     });
-                    collector.addAll(p.parse(build, Arrays.asList(listFiles), listener));
+                    collector.addAll(parse(p, build, Arrays.asList(listFiles), listener));
                 }
             }
         }
-        
-        addPreviousBuildReports();
     }
-    
-    private void addPreviousBuildReports() {
-        
-        // Avoid parsing all builds.
-        if ( PerformanceReportMap.currentBuild == null ) {
-            PerformanceReportMap.currentBuild = getBuild();
-        }else {
-            if( PerformanceReportMap.currentBuild != getBuild() ) {
-                PerformanceReportMap.currentBuild = null;
-                return;
-            }
-        }
-        
-        AbstractBuild<?, ?> previousBuild = getBuild().getPreviousBuild();
-        if ( previousBuild == null ) {
-            return;
-        }
-        
-        PerformanceBuildAction previousPerformanceAction = previousBuild.getAction(PerformanceBuildAction.class);
-        if ( previousPerformanceAction == null ) {
-            return;
-        }
-        
-        PerformanceReportMap previousPerformanceReportMap = previousPerformanceAction.getPerformanceReportMap();
-        if (previousPerformanceReportMap == null) {
-            return;
+
+    /**
+     * Parses reports in the {@link ParseScheduler} lane of page views.
+     */
+    private static Collection<PerformanceReport> parse(PerformanceReportParser parser,
+            AbstractBuild<?, ?> build, List<File> reports, TaskListener listener)
+            throws IOException {
+        try {
+            return ParseScheduler.parse(ParseScheduler.Lane.VIEW, parser, build,
+                    reports, listener, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted = new InterruptedIOException(
+                    "Interrupted while waiting to parse " + build);
+            interrupted.initCause(e);
+            throw interrupted;
         }
-        
-        for (Map.Entry<String, PerformanceReport> item : getPerformanceReportMap().entrySet()) {
-            PerformanceReport lastReport = previousPerformanceReportMap.getPerformanceReportMap().get( item.getKey() );
-            if ( lastReport != null ) {
-                item.getValue().setLastBuildReport( lastReport );
-            }
+    }
+
+    /**
+     * Gets the summary of the given report in the baseline build, as resolved
+     * by {@link BaselineResolver}.
+     *
+     * @return the summary, or null if the baseline has no such report
+     */
+    PerformanceReportSummary getBaselineSummary(String reportFileName) {
+        Map<String, PerformanceReportSummary> baseline = baselineSummaries;
+        if (baseline == null) {
+            baseline = new BaselineResolver(getBuild()).getSummaries();
+            baselineSummaries = baseline;
         }
+        return baseline.get(reportFileName);
     }
 
     private interface PerformanceReportCollector {
@@ -0,0 +1,221 @@
+package hudson.plugins.performance;
+
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact aggregates of a {@link PerformanceReport}, stored with the build by
+ * {@link PerformanceBuildAction} so the report can be compared with other
+ * builds without parsing it again.
+ */
+public class PerformanceReportSummary {
+
+  private final String reportFileName;
+
+  private final int size;
+
+  private final int errors;
+
+  private final double errorPercent;
+
+  private final long average;
+
+  private final long median;
+
+  private final long line90;
+
+  private final long min;
+
+  private final long max;
+
+  private final double throughput;
+
+  private final double averageBytesTransferred;
+
+  /**
+   * {@link UriReportSummary}s keyed by their {@link UriReport#getStaplerUri()}.
+   */
+  private final Map<String, UriReportSummary> uriSummaryMap = new LinkedHashMap<String, UriReportSummary>();
+
+  /**
+   * Whether the differences to the baseline build have been computed.
+   */
+  private boolean compared;
+
+  private int sizeDiff;
+
+  private long averageDiff;
+
+  private long medianDiff;
+
+  private double errorPercentDiff;
+
+  /**
+   * Test of the durations of all the URIs against the baseline build, null if
+   * it wasn't there or either build has no histograms.
+   */
+  private LatencyComparison comparison;
+
+  public PerformanceReportSummary(PerformanceReport report) {
+    this.reportFileName = report.getReportFileName();
+    this.size = report.size();
+    this.errors = report.countErrors();
+    this.errorPercent = report.errorPercent();
+    this.average = report.getAverage();
+    this.median = report.getMedian();
+    this.line90 = report.get90Line();
+    this.min = report.getMin();
+    this.max = report.getMax();
+    this.throughput = report.getThrougput();
+    this.averageBytesTransferred = report.getAverageBytesTransferred();
+    for (Map.Entry<String, UriReport> item : report.getUriReportMap().entrySet()) {
+      uriSummaryMap.put(item.getKey(), new UriReportSummary(item.getValue()));
+    }
+  }
+
+  /**
+   * Computes the differences to the same report in the baseline build, for
+   * the report and each of its URIs, so that rendering them is a lookup.
+   *
+   * @param baseline
+   *            the summary in the baseline build, or null if it wasn't there
+   */
+  void compareWith(PerformanceReportSummary baseline) {
+    if (baseline != null) {
+      sizeDiff = size - baseline.size;
+      averageDiff = average - baseline.average;
+      medianDiff = median - baseline.median;
+      errorPercentDiff = errorPercent - baseline.errorPercent;
+      for (UriReportSummary uriSummary : uriSummaryMap.values()) {
+        uriSummary.compareWith(baseline.getUriSummary(uriSummary.getStaplerUri()));
+      }
+      LatencyHistogram histogram = getHistogram();
+      LatencyHistogram baselineHistogram = baseline.getHistogram();
+      if (histogram != null && baselineHistogram != null) {
+        comparison = LatencyComparison.compare(histogram, baselineHistogram);
+      }
+    }
+    compared = true;
+  }
+
+  /**
+   * @return the distribution of the durations of all the URIs, or null if
+   *         any has no histogram
+   */
+  LatencyHistogram getHistogram() {
+    List<LatencyHistogram> histograms = new ArrayList<LatencyHistogram>(uriSummaryMap.size());
+    for (UriReportSummary uriSummary : uriSummaryMap.values()) {
+      if (uriSummary.getHistogram() == null) {
+        return null;
+      }
+      histograms.add(uriSummary.getHistogram());
+    }
+    return LatencyHistogram.merge(histograms);
+  }
+
+  /**
+   * @return the test of the durations against the baseline build, or null
+   */
+  public LatencyComparison getComparison() {
+    return comparison;
+  }
+
+  boolean isCompared() {
+    return compared;
+  }
+
+  public String getReportFileName() {
+    return reportFileName;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int countErrors() {
+    return errors;
+  }
+
+  public double errorPercent() {
+    return errorPercent;
+  }
+
+  public long getAverage() {
+    return average;
+  }
+
+  public long getMedian() {
+    return median;
+  }
+
+  public long get90Line() {
+    return line90;
+  }
+
+  public long getMin() {
+    return min;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  public double getThroughput() {
+    return throughput;
+  }
+
+  public double getAverageBytesTransferred() {
+    return averageBytesTransferred;
+  }
+
+  public String getHttpCode() {
+    return "";
+  }
+
+  public int getSizeDiff() {
+    return sizeDiff;
+  }
+
+  public long getAverageDiff() {
+    return averageDiff;
+  }
+
+  public long getMedianDiff() {
+    return medianDiff;
+  }
+
+  public double getErrorPercentDiff() {
+    return errorPercentDiff;
+  }
+
+  public String getLastBuildHttpCodeIfChanged() {
+    return "";
+  }
+
+  public String encodeUriReport(UriReportSummary uriSummary)
+      throws UnsupportedEncodingException {
+    return UriReport.encodeUriReport(reportFileName, uriSummary.getStaplerUri());
+  }
+
+  /**
+   * Reads the distributions of the durations of the URIs from the given file
+   * from now on.
+   */
+  void setHistogramFile(HistogramFile histogramFile) {
+    for (UriReportSummary uriSummary : uriSummaryMap.values()) {
+      uriSummary.setHistogramFile(reportFileName, histogramFile);
+    }
+  }
+
+  public UriReportSummary getUriSummary(String staplerUri) {
+    return uriSummaryMap.get(staplerUri);
+  }
+
+  public Collection<UriReportSummary> getUriSummaries() {
+    return uriSummaryMap.values();
+  }
+}
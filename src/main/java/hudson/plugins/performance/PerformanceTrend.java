@@ -0,0 +1,548 @@
+package hudson.plugins.performance;
+
+import hudson.model.AbstractBuild;
+import hudson.plugins.performance.PerformanceProjectAction.Range;
+import hudson.util.ChartUtil.NumberOnlyBuildLabel;
+import hudson.util.DataSetBuilder;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trend of a performance report over a range of builds.
+ *
+ * The trend is computed in a single walk over the builds, from the
+ * {@link PerformanceReportSummary}s stored with them, and is shared by all the
+ * trend graphs of the report: each graph only slices its series out of it.
+ */
+public class PerformanceTrend {
+
+  /**
+   * How long a computed trend is reused, in milliseconds.
+   */
+  private static final long TIME_TO_LIVE = 30 * 1000;
+
+  private static final int MAX_ENTRIES = 50;
+
+  /**
+   * Maximum number of test cases charted together, to keep large suites
+   * chartable.
+   */
+  public static final int MAX_TEST_CASES = Integer.getInteger(
+      PerformanceTrend.class.getName() + ".maxTestCases", 50);
+
+  private static final Map<String, PerformanceTrend> CACHE = Collections.synchronizedMap(new LinkedHashMap<String, PerformanceTrend>(
+      16, 0.75f, true) {
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, PerformanceTrend> eldest) {
+      return size() > MAX_ENTRIES || eldest.getValue().isExpired();
+    }
+  });
+
+  /**
+   * The report of one build in the trend.
+   */
+  public static class Point {
+
+    private final AbstractBuild<?, ?> build;
+
+    private final PerformanceReportSummary summary;
+
+    Point(AbstractBuild<?, ?> build, PerformanceReportSummary summary) {
+      this.build = build;
+      this.summary = summary;
+    }
+
+    public AbstractBuild<?, ?> getBuild() {
+      return build;
+    }
+
+    public NumberOnlyBuildLabel getLabel() {
+      return new NumberOnlyBuildLabel(build);
+    }
+
+    public PerformanceReportSummary getSummary() {
+      return summary;
+    }
+  }
+
+  /**
+   * Value of a report summary a trend can be downsampled on.
+   */
+  public enum Metric {
+    ERROR_PERCENT {
+      double valueOf(PerformanceReportSummary summary) {
+        return summary.errorPercent();
+      }
+    },
+    LINE90 {
+      double valueOf(PerformanceReportSummary summary) {
+        return summary.get90Line();
+      }
+    },
+    THROUGHPUT {
+      double valueOf(PerformanceReportSummary summary) {
+        return summary.getThroughput();
+      }
+    },
+    BYTES_TRANSFERRED {
+      double valueOf(PerformanceReportSummary summary) {
+        return summary.getAverageBytesTransferred();
+      }
+    };
+
+    abstract double valueOf(PerformanceReportSummary summary);
+  }
+
+  private final String performanceReportNameFile;
+
+  /**
+   * Points ordered like {@link hudson.model.AbstractProject#getBuilds()},
+   * newest first.
+   */
+  private final List<Point> points;
+
+  /**
+   * Builds within the range whose reports could not be loaded in time, newest
+   * first.
+   */
+  private final List<AbstractBuild<?, ?>> missingBuilds;
+
+  private final long timestamp = System.currentTimeMillis();
+
+  PerformanceTrend(String performanceReportNameFile, List<Point> points,
+      List<AbstractBuild<?, ?>> missingBuilds) {
+    this.performanceReportNameFile = performanceReportNameFile;
+    this.points = points;
+    this.missingBuilds = missingBuilds;
+  }
+
+  /**
+   * Computes the trend of a report over the builds within the given range.
+   *
+   * @param builds
+   *            all the builds of the project, newest first
+   */
+  public static PerformanceTrend compute(
+      List<? extends AbstractBuild<?, ?>> builds, Range buildsLimits,
+      String performanceReportNameFile) {
+    return compute(buildsLimits.getBuilds(builds), performanceReportNameFile);
+  }
+
+  /**
+   * Computes the trend of a report over the given builds.
+   */
+  private static PerformanceTrend compute(
+      List<? extends AbstractBuild<?, ?>> inRange,
+      final String performanceReportNameFile) {
+    // parse the builds recorded without summaries in parallel
+    List<AbstractBuild<?, ?>> toLoad = new ArrayList<AbstractBuild<?, ?>>();
+    for (AbstractBuild<?, ?> build : inRange) {
+      PerformanceBuildAction performanceBuildAction = build.getAction(PerformanceBuildAction.class);
+      if (performanceBuildAction != null
+          && !performanceBuildAction.hasSummaries()) {
+        toLoad.add(build);
+      }
+    }
+    Map<AbstractBuild<?, ?>, PerformanceReportSummary> loaded = BuildReportLoader.load(
+        toLoad, new BuildReportLoader.Task<PerformanceReportSummary>() {
+
+          public PerformanceReportSummary load(AbstractBuild<?, ?> build) {
+            return build.getAction(PerformanceBuildAction.class).getSummary(
+                performanceReportNameFile);
+          }
+        });
+
+    List<Point> points = new ArrayList<Point>();
+    List<AbstractBuild<?, ?>> missingBuilds = new ArrayList<AbstractBuild<?, ?>>();
+    for (AbstractBuild<?, ?> build : inRange) {
+      PerformanceBuildAction performanceBuildAction = build.getAction(PerformanceBuildAction.class);
+      if (performanceBuildAction == null) {
+        continue;
+      }
+      PerformanceReportSummary summary;
+      if (performanceBuildAction.hasSummaries()) {
+        summary = performanceBuildAction.getSummary(performanceReportNameFile);
+      } else if (loaded.containsKey(build)) {
+        summary = loaded.get(build);
+      } else {
+        missingBuilds.add(build);
+        continue;
+      }
+      if (summary != null) {
+        points.add(new Point(build, summary));
+      }
+    }
+    return new PerformanceTrend(performanceReportNameFile, points,
+        missingBuilds);
+  }
+
+  /**
+   * Computes the trend of a report over a build and the builds before it,
+   * looking back at most the given number of builds.
+   *
+   * @return the trend, newest build first
+   */
+  public static PerformanceTrend computeHistory(AbstractBuild<?, ?> build,
+      int depth, String performanceReportNameFile) {
+    List<AbstractBuild<?, ?>> builds = new ArrayList<AbstractBuild<?, ?>>();
+    for (AbstractBuild<?, ?> currentBuild = build; currentBuild != null
+        && depth > 0; currentBuild = currentBuild.getPreviousBuild(), depth--) {
+      builds.add(currentBuild);
+    }
+    return compute(builds, performanceReportNameFile);
+  }
+
+  /**
+   * @return the trend cached under the given key, or null if there is none or
+   *         it has expired
+   */
+  static PerformanceTrend getCached(String key) {
+    PerformanceTrend trend = CACHE.get(key);
+    if (trend == null || trend.isExpired()) {
+      PerformanceDiagnostics.lookup("Trends", false);
+      return null;
+    }
+    PerformanceDiagnostics.lookup("Trends", true);
+    return trend;
+  }
+
+  static void cache(String key, PerformanceTrend trend) {
+    CACHE.put(key, trend);
+  }
+
+  private boolean isExpired() {
+    return System.currentTimeMillis() - timestamp > TIME_TO_LIVE;
+  }
+
+  public String getPerformanceReportNameFile() {
+    return performanceReportNameFile;
+  }
+
+  public List<Point> getPoints() {
+    return points;
+  }
+
+  public List<AbstractBuild<?, ?>> getMissingBuilds() {
+    return missingBuilds;
+  }
+
+  /**
+   * @return false if some builds could not be loaded in time, in which case
+   *         the trend should not be cached
+   */
+  public boolean isComplete() {
+    return missingBuilds.isEmpty();
+  }
+
+  /**
+   * Reduces the trend to at most <code>maxPoints</code> builds with
+   * {@link Downsampler#largestTriangleThreeBuckets}, so that a graph over
+   * thousands of builds stays readable and quick to render while keeping its
+   * spikes.
+   *
+   * @param metric
+   *            the value whose shape is kept
+   * @return this trend if it has no more builds than <code>maxPoints</code>
+   */
+  public PerformanceTrend downsample(int maxPoints, Metric metric) {
+    if (points.size() <= maxPoints) {
+      return this;
+    }
+    double[] values = new double[points.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = metric.valueOf(points.get(i).getSummary());
+    }
+    int[] selected = Downsampler.largestTriangleThreeBuckets(values, maxPoints);
+    List<Point> sampled = new ArrayList<Point>(selected.length);
+    for (int i : selected) {
+      sampled.add(points.get(i));
+    }
+    return new PerformanceTrend(performanceReportNameFile, sampled,
+        missingBuilds);
+  }
+
+  public DataSetBuilder<String, NumberOnlyBuildLabel> getErrorsDataSet() {
+    DataSetBuilder<String, NumberOnlyBuildLabel> dataSet = new DataSetBuilder<String, NumberOnlyBuildLabel>();
+    for (Point point : points) {
+      dataSet.add(point.getSummary().errorPercent(),
+          Messages.ProjectAction_Errors(), point.getLabel());
+    }
+    return dataSet;
+  }
+
+  public DataSetBuilder<String, NumberOnlyBuildLabel> getRespondingTimeDataSet() {
+    DataSetBuilder<String, NumberOnlyBuildLabel> dataSet = new DataSetBuilder<String, NumberOnlyBuildLabel>();
+    for (Point point : points) {
+      NumberOnlyBuildLabel label = point.getLabel();
+      PerformanceReportSummary summary = point.getSummary();
+      dataSet.add(summary.getMedian(), Messages.ProjectAction_Median(), label);
+      dataSet.add(summary.getAverage(), Messages.ProjectAction_Average(), label);
+      dataSet.add(summary.get90Line(), Messages.ProjectAction_Line90(), label);
+    }
+    return dataSet;
+  }
+
+  public DataSetBuilder<String, NumberOnlyBuildLabel> getAverageDataSet() {
+    DataSetBuilder<String, NumberOnlyBuildLabel> dataSet = new DataSetBuilder<String, NumberOnlyBuildLabel>();
+    for (Point point : points) {
+      dataSet.add(point.getSummary().getAverage(),
+          Messages.ProjectAction_Average(), point.getLabel());
+    }
+    return dataSet;
+  }
+
+  public DataSetBuilder<String, NumberOnlyBuildLabel> getThroughputDataSet() {
+    DataSetBuilder<String, NumberOnlyBuildLabel> dataSet = new DataSetBuilder<String, NumberOnlyBuildLabel>();
+    for (Point point : points) {
+      dataSet.add(point.getSummary().getThroughput(),
+          Messages.ProjectAction_Throughput(), point.getLabel());
+    }
+    return dataSet;
+  }
+
+  public DataSetBuilder<String, NumberOnlyBuildLabel> getBytesTransferredDataSet() {
+    DataSetBuilder<String, NumberOnlyBuildLabel> dataSet = new DataSetBuilder<String, NumberOnlyBuildLabel>();
+    for (Point point : points) {
+      dataSet.add(point.getSummary().getAverageBytesTransferred() / 1024.00,
+          Messages.ProjectAction_BytesTransferred(), point.getLabel());
+    }
+    return dataSet;
+  }
+
+  public DataSetBuilder<String, NumberOnlyBuildLabel> getBytesTransferredPerUriDataSet() {
+    DataSetBuilder<String, NumberOnlyBuildLabel> dataSet = new DataSetBuilder<String, NumberOnlyBuildLabel>();
+    for (Point point : points) {
+      NumberOnlyBuildLabel label = point.getLabel();
+      for (UriReportSummary uriSummary : point.getSummary().getUriSummaries()) {
+        dataSet.add(uriSummary.getAverageBytesTransferred() / 1024.00,
+            uriSummary.getUri(), label);
+      }
+    }
+    return dataSet;
+  }
+
+  /**
+   * @return the average of each URI, with the builds as series
+   */
+  public DataSetBuilder<NumberOnlyBuildLabel, String> getSummarizerDataSet() {
+    DataSetBuilder<NumberOnlyBuildLabel, String> dataSet = new DataSetBuilder<NumberOnlyBuildLabel, String>();
+    for (Point point : points) {
+      NumberOnlyBuildLabel label = point.getLabel();
+      for (UriReportSummary uriSummary : point.getSummary().getUriSummaries()) {
+        dataSet.add(uriSummary.getAverage(), label, uriSummary.getStaplerUri());
+      }
+    }
+    return dataSet;
+  }
+
+  /**
+   * Gets the URIs, or test cases, of the trend with the highest average
+   * responding time over the builds of the trend.
+   *
+   * @param count
+   *            how many URIs to return, at most {@link #MAX_TEST_CASES}
+   * @return the URIs, slowest first
+   */
+  public List<String> getSlowestUris(int count) {
+    final Map<String, long[]> totals = new HashMap<String, long[]>();
+    for (Point point : points) {
+      for (UriReportSummary uriSummary : point.getSummary().getUriSummaries()) {
+        long[] total = totals.get(uriSummary.getUri());
+        if (total == null) {
+          total = new long[2];
+          totals.put(uriSummary.getUri(), total);
+        }
+        total[0] += uriSummary.getAverage();
+        total[1]++;
+      }
+    }
+    List<String> uris = new ArrayList<String>(totals.keySet());
+    Collections.sort(uris, new Comparator<String>() {
+
+      public int compare(String uri1, String uri2) {
+        long[] total1 = totals.get(uri1);
+        long[] total2 = totals.get(uri2);
+        double average1 = (double) total1[0] / total1[1];
+        double average2 = (double) total2[0] / total2[1];
+        int result = Double.compare(average2, average1);
+        return result != 0 ? result : uri1.compareTo(uri2);
+      }
+    });
+    int size = Math.min(Math.min(count, MAX_TEST_CASES), uris.size());
+    return new ArrayList<String>(uris.subList(0, Math.max(size, 0)));
+  }
+
+  /**
+   * Gets one point per build for each of the given URIs, or test cases: their
+   * average responding time, or 0 if they failed.
+   */
+  public DataSetBuilder<String, NumberOnlyBuildLabel> getTestCaseDataSet(
+      Collection<String> uris) {
+    DataSetBuilder<String, NumberOnlyBuildLabel> dataSet = new DataSetBuilder<String, NumberOnlyBuildLabel>();
+    for (Point point : points) {
+      NumberOnlyBuildLabel label = point.getLabel();
+      for (UriReportSummary uriSummary : point.getSummary().getUriSummaries()) {
+        if (uris.contains(uriSummary.getUri())) {
+          // failed test cases are charted with a duration of 0
+          dataSet.add(uriSummary.isFailed() ? 0 : uriSummary.getAverage(),
+              uriSummary.getUri(), label);
+        }
+      }
+    }
+    return dataSet;
+  }
+
+  /**
+   * Columns of the trend data written by {@link #writeCsv} and
+   * {@link #writeJson}.
+   */
+  private static final String[] COLUMNS = { "build", "timestamp", "samples",
+      "average", "median", "line90", "min", "max", "errors", "errorPercent",
+      "throughput", "averageBytesTransferred" };
+
+  /**
+   * Writes the trend as CSV, oldest build first, with a header line.
+   *
+   * @param staplerUri
+   *            the URI to write the trend of, or null for the whole report
+   */
+  public void writeCsv(Writer out, String staplerUri) throws IOException {
+    for (int i = 0; i < COLUMNS.length; i++) {
+      if (i > 0) {
+        out.write(',');
+      }
+      out.write(COLUMNS[i]);
+    }
+    out.write('\n');
+    for (int p = points.size() - 1; p >= 0; p--) {
+      Number[] values = getValues(points.get(p), staplerUri);
+      if (values == null) {
+        continue;
+      }
+      for (int i = 0; i < values.length; i++) {
+        if (i > 0) {
+          out.write(',');
+        }
+        if (isFinite(values[i])) {
+          out.write(values[i].toString());
+        }
+      }
+      out.write('\n');
+    }
+  }
+
+  /**
+   * Writes the trend as JSON, oldest build first. The builds are written as
+   * arrays of numbers in the order of the <code>columns</code> array, to keep
+   * the output compact.
+   *
+   * @param staplerUri
+   *            the URI to write the trend of, or null for the whole report
+   */
+  public void writeJson(Writer out, String staplerUri) throws IOException {
+    out.write("{\"report\":");
+    writeJsonString(out, performanceReportNameFile);
+    out.write(",\"uri\":");
+    writeJsonString(out, staplerUri);
+    out.write(",\"columns\":[");
+    for (int i = 0; i < COLUMNS.length; i++) {
+      if (i > 0) {
+        out.write(',');
+      }
+      writeJsonString(out, COLUMNS[i]);
+    }
+    out.write("],\"builds\":[");
+    boolean first = true;
+    for (int p = points.size() - 1; p >= 0; p--) {
+      Number[] values = getValues(points.get(p), staplerUri);
+      if (values == null) {
+        continue;
+      }
+      if (!first) {
+        out.write(',');
+      }
+      first = false;
+      out.write('[');
+      for (int i = 0; i < values.length; i++) {
+        if (i > 0) {
+          out.write(',');
+        }
+        out.write(isFinite(values[i]) ? values[i].toString() : "null");
+      }
+      out.write(']');
+    }
+    out.write("],\"missingBuilds\":[");
+    for (int i = missingBuilds.size() - 1; i >= 0; i--) {
+      out.write(String.valueOf(missingBuilds.get(i).number));
+      if (i > 0) {
+        out.write(',');
+      }
+    }
+    out.write("]}");
+  }
+
+  /**
+   * @return the values of the {@link #COLUMNS} for a build, or null if the
+   *         URI was not requested in that build
+   */
+  private static Number[] getValues(Point point, String staplerUri) {
+    AbstractBuild<?, ?> build = point.getBuild();
+    PerformanceReportSummary summary = point.getSummary();
+    if (staplerUri == null) {
+      return new Number[] { build.number, build.getTimeInMillis(),
+          summary.size(), summary.getAverage(), summary.getMedian(),
+          summary.get90Line(), summary.getMin(), summary.getMax(),
+          summary.countErrors(), summary.errorPercent(),
+          summary.getThroughput(), summary.getAverageBytesTransferred() };
+    }
+    UriReportSummary uriSummary = summary.getUriSummary(staplerUri);
+    if (uriSummary == null) {
+      return null;
+    }
+    return new Number[] { build.number, build.getTimeInMillis(),
+        uriSummary.size(), uriSummary.getAverage(), uriSummary.getMedian(),
+        uriSummary.get90Line(), uriSummary.getMin(), uriSummary.getMax(),
+        uriSummary.countErrors(), uriSummary.errorPercent(),
+        uriSummary.getThroughput(),
+        uriSummary.getAverageBytesTransferred() };
+  }
+
+  private static boolean isFinite(Number value) {
+    if (value == null) {
+      return false;
+    }
+    double d = value.doubleValue();
+    return !Double.isNaN(d) && !Double.isInfinite(d);
+  }
+
+  private static void writeJsonString(Writer out, String value)
+      throws IOException {
+    if (value == null) {
+      out.write("null");
+      return;
+    }
+    out.write('"');
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        out.write('\\');
+        out.write(c);
+      } else if (c < 0x20) {
+        out.write(String.format("\\u%04x", (int) c));
+      } else {
+        out.write(c);
+      }
+    }
+    out.write('"');
+  }
+}
@@ -0,0 +1,141 @@
+package hudson.plugins.performance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the URIs whose 90% line regressed more than a given percentage
+ * against a baseline build, from the summaries stored with both builds.
+ */
+public class RegressionGate {
+
+  /**
+   * A URI slower than in the baseline.
+   */
+  public static class Regression implements Comparable<Regression> {
+
+    private final String reportFileName;
+
+    private final String uri;
+
+    private final long baselineLine90;
+
+    private final long line90;
+
+    /**
+     * Percentage of the samples slower than the 90% line of the baseline, or
+     * -1 if either build has no histogram.
+     */
+    private final double slowerPercent;
+
+    Regression(String reportFileName, UriReportSummary uriSummary,
+        UriReportSummary baseline) {
+      this.reportFileName = reportFileName;
+      this.uri = uriSummary.getUri();
+      this.baselineLine90 = baseline.get90Line();
+      this.line90 = uriSummary.get90Line();
+      LatencyHistogram histogram = uriSummary.getHistogram();
+      if (histogram != null && baseline.getHistogram() != null
+          && histogram.getCount() > 0) {
+        slowerPercent = (double) histogram.countAbove(baselineLine90)
+            / histogram.getCount() * 100;
+      } else {
+        slowerPercent = -1;
+      }
+    }
+
+    public String getReportFileName() {
+      return reportFileName;
+    }
+
+    public String getUri() {
+      return uri;
+    }
+
+    public long getBaselineLine90() {
+      return baselineLine90;
+    }
+
+    public long get90Line() {
+      return line90;
+    }
+
+    /**
+     * @return the increase of the 90% line, in percent of the baseline
+     */
+    public double getIncrease() {
+      return (double) (line90 - baselineLine90) / baselineLine90 * 100;
+    }
+
+    public double getSlowerPercent() {
+      return slowerPercent;
+    }
+
+    /**
+     * Orders the worst regressions first.
+     */
+    public int compareTo(Regression other) {
+      return Double.compare(other.getIncrease(), getIncrease());
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder text = new StringBuilder();
+      text.append(reportFileName).append(" ").append(uri).append(": 90% line ");
+      text.append(baselineLine90).append(" ms -> ").append(line90);
+      text.append(" ms (+").append(Math.round(getIncrease())).append("%)");
+      if (slowerPercent >= 0) {
+        text.append(", ").append(Math.round(slowerPercent));
+        text.append("% of the samples above the baseline's 90% line");
+      }
+      return text.toString();
+    }
+  }
+
+  /**
+   * Highest increase of the 90% line tolerated, in percent.
+   */
+  private final double maxIncrease;
+
+  public RegressionGate(double maxIncrease) {
+    this.maxIncrease = maxIncrease;
+  }
+
+  /**
+   * Compares the URIs of the reports of a build with the same URIs of the same
+   * reports in the baseline. URIs the baseline doesn't have are skipped.
+   *
+   * @param summaries
+   *            the summaries of the build keyed by report file name
+   * @param baseline
+   *            the summaries of the baseline keyed by report file name
+   * @return the URIs regressing more than the tolerated increase, the worst
+   *         first
+   */
+  public List<Regression> compare(
+      Map<String, PerformanceReportSummary> summaries,
+      Map<String, PerformanceReportSummary> baseline) {
+    List<Regression> regressions = new ArrayList<Regression>();
+    for (PerformanceReportSummary summary : summaries.values()) {
+      PerformanceReportSummary baselineSummary = baseline.get(summary.getReportFileName());
+      if (baselineSummary == null) {
+        continue;
+      }
+      for (UriReportSummary uriSummary : summary.getUriSummaries()) {
+        UriReportSummary baselineUriSummary = baselineSummary.getUriSummary(uriSummary.getStaplerUri());
+        if (baselineUriSummary == null || baselineUriSummary.get90Line() <= 0) {
+          continue;
+        }
+        Regression regression = new Regression(summary.getReportFileName(),
+            uriSummary, baselineUriSummary);
+        if (regression.getIncrease() > maxIncrease) {
+          regressions.add(regression);
+        }
+      }
+    }
+    Collections.sort(regressions);
+    return regressions;
+  }
+}
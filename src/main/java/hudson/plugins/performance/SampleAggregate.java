@@ -0,0 +1,216 @@
+package hudson.plugins.performance;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Running aggregates of the samples of a {@link UriReport} that doesn't keep
+ * them, once its report went past the {@link SampleBudget}.
+ *
+ * Counts, sums and extremes are exact; percentiles come from a
+ * {@link LatencyHistogram} and are known within about 6%. The durations and
+ * errors of each second are kept as well, so that the
+ * {@link SlidingWindowLatency} of the samples can still be told.
+ */
+public class SampleAggregate {
+
+  private int count;
+
+  private int errors;
+
+  private long totalDuration;
+
+  private long totalBytes;
+
+  private long min = Long.MAX_VALUE;
+
+  private long max = Long.MIN_VALUE;
+
+  private final Set<String> httpCodes = new LinkedHashSet<String>();
+
+  /**
+   * Number of durations in every bucket of the {@link LatencyHistogram}.
+   */
+  private int[] histogram = new int[LatencyHistogram.SUB_BUCKETS];
+
+  private final ThroughputCounter throughput = new ThroughputCounter();
+
+  /**
+   * Durations and errors of the samples started in a second.
+   */
+  private static class Second {
+    /**
+     * Indexes of the non-empty buckets, in increasing order.
+     */
+    int[] buckets = new int[4];
+
+    /**
+     * Number of durations in each of {@link #buckets}.
+     */
+    int[] counts = new int[4];
+
+    int used;
+
+    int count;
+
+    int errors;
+
+    void add(int bucket, boolean error) {
+      count++;
+      if (error) {
+        errors++;
+      }
+      // seconds hold few distinct buckets, so a scan is as fast as a search
+      int i = used;
+      while (i > 0 && buckets[i - 1] > bucket) {
+        i--;
+      }
+      if (i > 0 && buckets[i - 1] == bucket) {
+        counts[i - 1]++;
+        return;
+      }
+      if (used == buckets.length) {
+        buckets = LatencyHistogram.grow(buckets, used + 1);
+        counts = LatencyHistogram.grow(counts, used + 1);
+      }
+      System.arraycopy(buckets, i, buckets, i + 1, used - i);
+      System.arraycopy(counts, i, counts, i + 1, used - i);
+      buckets[i] = bucket;
+      counts[i] = 1;
+      used++;
+    }
+
+    LatencyHistogram getHistogram() {
+      int[] usedBuckets = new int[used];
+      int[] usedCounts = new int[used];
+      System.arraycopy(buckets, 0, usedBuckets, 0, used);
+      System.arraycopy(counts, 0, usedCounts, 0, used);
+      return new LatencyHistogram(usedBuckets, usedCounts, count);
+    }
+  }
+
+  /**
+   * Seconds keyed by their start time in seconds.
+   */
+  private final Map<Long, Second> timeline = new HashMap<Long, Second>();
+
+  /**
+   * The second samples were last added to: samples are mostly in order, so
+   * this saves looking most of them up.
+   */
+  private Second lastSecond;
+
+  private long lastSecondTime;
+
+  public void add(HttpSample sample) {
+    count++;
+    if (!sample.isSuccessful()) {
+      errors++;
+    }
+    long duration = sample.getDuration();
+    totalDuration += duration;
+    totalBytes += sample.getBytes();
+    min = Math.min(min, duration);
+    max = Math.max(max, duration);
+    httpCodes.add(sample.getHttpCode());
+    int bucket = LatencyHistogram.bucketOf(duration);
+    if (bucket >= histogram.length) {
+      histogram = LatencyHistogram.grow(histogram, bucket + 1);
+    }
+    histogram[bucket]++;
+    throughput.add(sample);
+    if (sample.getDate() != null) {
+      getSecond(ThroughputCounter.secondOf(sample.getDate().getTime())).add(
+          bucket, !sample.isSuccessful());
+    }
+  }
+
+  private Second getSecond(long time) {
+    if (lastSecond == null || time != lastSecondTime) {
+      lastSecond = timeline.get(time);
+      if (lastSecond == null) {
+        lastSecond = new Second();
+        timeline.put(time, lastSecond);
+      }
+      lastSecondTime = time;
+    }
+    return lastSecond;
+  }
+
+  public int size() {
+    return count;
+  }
+
+  public int countErrors() {
+    return errors;
+  }
+
+  public long getAverage() {
+    return totalDuration / count;
+  }
+
+  public long getAverageBytesTransferred() {
+    return totalBytes / count;
+  }
+
+  public long getMin() {
+    return min;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  /**
+   * @return the distinct HTTP codes, comma separated
+   */
+  public String getHttpCode() {
+    StringBuilder result = new StringBuilder();
+    for (String httpCode : httpCodes) {
+      if (result.length() > 0) {
+        result.append(',');
+      }
+      result.append(httpCode);
+    }
+    return result.toString();
+  }
+
+  /**
+   * @param percent
+   *            between 0 and 100
+   */
+  public long getValueAtPercentile(double percent) {
+    return LatencyHistogram.getValueAtPercentile(histogram, count, percent);
+  }
+
+  public LatencyHistogram getHistogram() {
+    return new LatencyHistogram(histogram, count);
+  }
+
+  public ThroughputCounter getThroughputCounter() {
+    return throughput;
+  }
+
+  /**
+   * @param time
+   *            start time of the second, in seconds
+   * @return the distribution of the durations of the samples started in the
+   *         second, null if there are none
+   */
+  LatencyHistogram getHistogram(long time) {
+    Second second = timeline.get(time);
+    return second == null ? null : second.getHistogram();
+  }
+
+  /**
+   * @param time
+   *            start time of the second, in seconds
+   * @return the number of failed samples started in the second
+   */
+  int countErrors(long time) {
+    Second second = timeline.get(time);
+    return second == null ? 0 : second.errors;
+  }
+}
@@ -0,0 +1,109 @@
+package hudson.plugins.performance;
+
+import hudson.model.Hudson;
+
+/**
+ * Limit on the number of samples the {@link PerformanceReport}s being parsed
+ * keep in memory together, derived from the heap budget of the global
+ * configuration.
+ *
+ * Past the limit, the {@link UriReport}s of a report only keep
+ * {@link SampleAggregate}s, so that abnormally long runs can't exhaust the
+ * heap of the master while their reports are parsed. Parses share the budget
+ * while {@link ParseScheduler} runs them; reports parsed outside of it each
+ * get the whole budget.
+ */
+public class SampleBudget {
+
+  /**
+   * Estimated heap used by a kept sample, with its date and strings, in bytes.
+   */
+  static final int SAMPLE_SIZE = 256;
+
+  /**
+   * Number of samples reserved at a time, so that parses don't contend for
+   * every sample.
+   */
+  static final int BLOCK = 1024;
+
+  /**
+   * Samples reserved by the parses running.
+   */
+  private static long reserved;
+
+  /**
+   * Samples reserved by the parse running on the current thread, null if
+   * there is none.
+   */
+  private static final ThreadLocal<long[]> LEASE = new ThreadLocal<long[]>();
+
+  private SampleBudget() {
+  }
+
+  /**
+   * Makes the reports parsed on the current thread share the budget with the
+   * other parses, until {@link #end()}.
+   */
+  static void begin() {
+    LEASE.set(new long[1]);
+  }
+
+  /**
+   * Gives back the samples reserved by the reports parsed on the current
+   * thread since {@link #begin()}.
+   */
+  static void end() {
+    long[] lease = LEASE.get();
+    LEASE.remove();
+    if (lease != null) {
+      synchronized (SampleBudget.class) {
+        reserved -= lease[0];
+      }
+    }
+  }
+
+  /**
+   * Reserves {@link #BLOCK} more samples for a report.
+   *
+   * @param keptSamples
+   *            number of samples the report reserved so far
+   * @return whether the report may keep the samples
+   */
+  static boolean reserve(long keptSamples) {
+    return reserve(keptSamples, getMaxSamples());
+  }
+
+  static boolean reserve(long keptSamples, long maxSamples) {
+    if (maxSamples == Long.MAX_VALUE) {
+      return true;
+    }
+    long[] lease = LEASE.get();
+    if (lease == null) {
+      return keptSamples + BLOCK <= maxSamples;
+    }
+    synchronized (SampleBudget.class) {
+      if (reserved + BLOCK > maxSamples) {
+        return false;
+      }
+      reserved += BLOCK;
+    }
+    lease[0] += BLOCK;
+    return true;
+  }
+
+  /**
+   * @return the number of samples the reports being parsed may keep,
+   *         Long.MAX_VALUE if there is no limit
+   */
+  public static long getMaxSamples() {
+    Hudson hudson = Hudson.getInstance();
+    if (hudson == null) {
+      return Long.MAX_VALUE;
+    }
+    PerformancePublisher.DescriptorImpl descriptor = hudson.getDescriptorByType(PerformancePublisher.DescriptorImpl.class);
+    if (descriptor == null || descriptor.getHeapBudget() <= 0) {
+      return Long.MAX_VALUE;
+    }
+    return (long) descriptor.getHeapBudget() * 1024 * 1024 / SAMPLE_SIZE;
+  }
+}
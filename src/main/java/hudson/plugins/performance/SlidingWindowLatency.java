@@ -0,0 +1,261 @@
+package hudson.plugins.performance;
+
+import java.util.List;
+
+/**
+ * 99% line and percentage of errors of samples over every window of a given
+ * number of seconds, one window starting each second.
+ *
+ * The samples are grouped by the second they started in, each second getting
+ * a {@link LatencyHistogram}. Sliding the window one second adds the histogram
+ * of the second entering it and removes the one of the second leaving it, so
+ * each window costs a pass over the latency buckets however many samples it
+ * holds.
+ *
+ * Only the samples a {@link ThroughputCounter} keeps are grouped: those of
+ * the span of at most {@link ThroughputCounter#MAX_SPAN_SECONDS} holding the
+ * most samples, so that a sample with a bogus time doesn't make a histogram
+ * for every second since then. The others are left out as outliers.
+ */
+public class SlidingWindowLatency {
+
+  private static final LatencyHistogram EMPTY = new LatencyHistogram(
+      new long[0]);
+
+  private final int windowSeconds;
+
+  /**
+   * Start time of the first window, in seconds.
+   */
+  private final long firstSecond;
+
+  /**
+   * 99% line of every window, by start second.
+   */
+  private final long[] line99;
+
+  /**
+   * Percentage of errors of every window, by start second.
+   */
+  private final double[] errorPercent;
+
+  /**
+   * Number of samples left out for being too far from the others.
+   */
+  private final int outliers;
+
+  /**
+   * Samples grouped by the second they started in.
+   */
+  private static class Seconds {
+    long firstSecond;
+    LatencyHistogram[] histograms = new LatencyHistogram[0];
+    int[] errors = new int[0];
+    int outliers;
+  }
+
+  /**
+   * @param windowSeconds
+   *            length of the windows in seconds. Runs shorter than that have a
+   *            single window.
+   */
+  public SlidingWindowLatency(List<HttpSample> samples, int windowSeconds) {
+    this(group(samples), windowSeconds);
+  }
+
+  /**
+   * @param windowSeconds
+   *            length of the windows in seconds. Runs shorter than that have a
+   *            single window.
+   */
+  public SlidingWindowLatency(SampleAggregate aggregate, int windowSeconds) {
+    this(group(aggregate), windowSeconds);
+  }
+
+  private static Seconds group(SampleAggregate aggregate) {
+    ThroughputCounter counter = aggregate.getThroughputCounter();
+    Seconds grouped = new Seconds();
+    grouped.outliers = counter.getOutliers();
+    long first = counter.getFirstSecond();
+    long last = counter.getLastSecond();
+    if (first > last) {
+      return grouped;
+    }
+    int seconds = (int) (last - first) + 1;
+    grouped.firstSecond = first;
+    grouped.histograms = new LatencyHistogram[seconds];
+    grouped.errors = new int[seconds];
+    for (int i = 0; i < seconds; i++) {
+      LatencyHistogram histogram = aggregate.getHistogram(first + i);
+      grouped.histograms[i] = histogram == null ? EMPTY : histogram;
+      grouped.errors[i] = aggregate.countErrors(first + i);
+    }
+    return grouped;
+  }
+
+  private static Seconds group(List<HttpSample> samples) {
+    ThroughputCounter counter = new ThroughputCounter();
+    for (HttpSample sample : samples) {
+      counter.add(sample);
+    }
+    Seconds grouped = new Seconds();
+    grouped.outliers = counter.getOutliers();
+    long first = counter.getFirstSecond();
+    long last = counter.getLastSecond();
+    if (first > last) {
+      return grouped;
+    }
+    int seconds = (int) (last - first) + 1;
+
+    // group the durations by second
+    int[] starts = new int[seconds + 1];
+    int[] errors = new int[seconds];
+    for (HttpSample sample : samples) {
+      if (isWithin(sample, first, last)) {
+        int second = (int) (ThroughputCounter.secondOf(sample.getDate()
+            .getTime()) - first);
+        starts[second + 1]++;
+        if (!sample.isSuccessful()) {
+          errors[second]++;
+        }
+      }
+    }
+    for (int i = 0; i < seconds; i++) {
+      starts[i + 1] += starts[i];
+    }
+    long[] durations = new long[starts[seconds]];
+    int[] next = new int[seconds];
+    System.arraycopy(starts, 0, next, 0, seconds);
+    for (HttpSample sample : samples) {
+      if (isWithin(sample, first, last)) {
+        int second = (int) (ThroughputCounter.secondOf(sample.getDate()
+            .getTime()) - first);
+        durations[next[second]++] = sample.getDuration();
+      }
+    }
+    grouped.firstSecond = first;
+    grouped.histograms = new LatencyHistogram[seconds];
+    grouped.errors = errors;
+    for (int i = 0; i < seconds; i++) {
+      grouped.histograms[i] = new LatencyHistogram(durations, starts[i],
+          starts[i + 1]);
+    }
+    return grouped;
+  }
+
+  private SlidingWindowLatency(Seconds grouped, int windowSeconds) {
+    LatencyHistogram[] histograms = grouped.histograms;
+    int[] errors = grouped.errors;
+    int seconds = histograms.length;
+    this.outliers = grouped.outliers;
+    this.firstSecond = grouped.firstSecond;
+    if (seconds == 0) {
+      this.windowSeconds = windowSeconds;
+      this.line99 = new long[0];
+      this.errorPercent = new double[0];
+      return;
+    }
+    int window = Math.max(Math.min(windowSeconds, seconds), 1);
+    int maxBucket = 0;
+    for (LatencyHistogram histogram : histograms) {
+      maxBucket = Math.max(maxBucket, histogram.getMaxBucket());
+    }
+
+    // slide the window
+    this.windowSeconds = window;
+    this.line99 = new long[seconds - window + 1];
+    this.errorPercent = new double[seconds - window + 1];
+    int[] dense = new int[maxBucket + 1];
+    long count = 0;
+    long windowErrors = 0;
+    for (int i = 0; i < seconds; i++) {
+      histograms[i].addTo(dense, 1);
+      count += histograms[i].getCount();
+      windowErrors += errors[i];
+      if (i >= window) {
+        histograms[i - window].addTo(dense, -1);
+        count -= histograms[i - window].getCount();
+        windowErrors -= errors[i - window];
+      }
+      if (i >= window - 1) {
+        int start = i - window + 1;
+        line99[start] = LatencyHistogram.getValueAtPercentile(dense, count, 99);
+        errorPercent[start] = count == 0 ? 0 : (double) windowErrors / count
+            * 100;
+      }
+    }
+  }
+
+  private static boolean isWithin(HttpSample sample, long firstSecond,
+      long lastSecond) {
+    if (sample.getDate() == null) {
+      return false;
+    }
+    long second = ThroughputCounter.secondOf(sample.getDate().getTime());
+    return second >= firstSecond && second <= lastSecond;
+  }
+
+  /**
+   * @return the number of samples left out for being outside the span of
+   *         {@link ThroughputCounter#MAX_SPAN_SECONDS} holding the most samples
+   */
+  public int getOutliers() {
+    return outliers;
+  }
+
+  /**
+   * @return the length of the windows in seconds
+   */
+  public int getWindowSeconds() {
+    return windowSeconds;
+  }
+
+  /**
+   * @return the 99% line of every window, by start second
+   */
+  public long[] getLine99Series() {
+    return line99;
+  }
+
+  /**
+   * @return the percentage of errors of every window, by start second
+   */
+  public double[] getErrorPercentSeries() {
+    return errorPercent;
+  }
+
+  /**
+   * @return the start time in milliseconds of the window at the given index
+   */
+  public long getWindowStart(int index) {
+    return (firstSecond + index) * 1000;
+  }
+
+  /**
+   * @return the index of the window with the highest 99% line, -1 if there
+   *         are no samples
+   */
+  public int getWorstLine99Window() {
+    int worst = -1;
+    for (int i = 0; i < line99.length; i++) {
+      if (worst < 0 || line99[i] > line99[worst]) {
+        worst = i;
+      }
+    }
+    return worst;
+  }
+
+  /**
+   * @return the index of the window with the highest percentage of errors, -1
+   *         if there are no samples
+   */
+  public int getWorstErrorPercentWindow() {
+    int worst = -1;
+    for (int i = 0; i < errorPercent.length; i++) {
+      if (worst < 0 || errorPercent[i] > errorPercent[worst]) {
+        worst = i;
+      }
+    }
+    return worst;
+  }
+}
@@ -3,11 +3,8 @@ package hudson.plugins.performance;
 import hudson.model.ModelObject;
 import hudson.model.AbstractBuild;
 import hudson.model.AbstractProject;
-import hudson.plugins.performance.PerformanceProjectAction.Range;
 import hudson.util.ChartUtil;
-import hudson.util.ChartUtil.NumberOnlyBuildLabel;
 import hudson.util.ColorPalette;
-import hudson.util.DataSetBuilder;
 import hudson.util.ShiftedCategoryAxis;
 
 import java.awt.BasicStroke;
@@ -39,21 +36,56 @@ import org.kohsuke.stapler.StaplerResponse;
 public class TestSuiteReportDetail implements ModelObject{
 
   private AbstractProject<?, ?> project;
+  private PerformanceProjectAction projectAction;
   private String filename;
-  private Range buildsLimits;
+  private GraphConfigurationDetail graphConf;
+  /**
+   * How many of the slowest test cases to show, or 0 to show the test cases
+   * in alphabetical order.
+   */
+  private int testCaseCount;
+  /**
+   * The page of test cases in alphabetical order to show, from 1.
+   */
+  private int page = 1;
+  
+  private transient int testCaseTotal;
+  
+  private transient int firstShown;
   
   private transient List<String> performanceReportTestCaseList;
   
-  public TestSuiteReportDetail(final AbstractProject<?, ?> project,
+  public TestSuiteReportDetail(final PerformanceProjectAction projectAction,
       final String pluginName, final StaplerRequest request, String filename,
-      Range buildsLimits) {
-    this.project = project;
+      GraphConfigurationDetail graphConf) {
+    this.projectAction = projectAction;
+    this.project = projectAction.getProject();
     this.filename = filename;
-    this.buildsLimits = buildsLimits;
+    this.graphConf = graphConf;
+    if (request.getParameter("top") != null) {
+      this.testCaseCount = PerformanceProjectAction.getTestCaseCount(request);
+    }
+    if (request.getParameter("page") != null) {
+      try {
+        this.page = Math.max(Integer.parseInt(request.getParameter("page")), 1);
+      } catch (NumberFormatException e) {
+        // show the first page
+      }
+    }
   }
 
   
-  public void doRespondingTimeGraphPerTestCaseMode(StaplerRequest request,
+  public void doRespondingTimeGraphPerTestCaseMode(StaplerRequest request, StaplerResponse response)
+      throws IOException {
+    long start = PerformanceDiagnostics.start();
+    try {
+      respondingTimeGraphPerTestCaseMode(request, response);
+    } finally {
+      PerformanceDiagnostics.record("Test suite responding time graph", start);
+    }
+  }
+
+  private void respondingTimeGraphPerTestCaseMode(StaplerRequest request,
 	      StaplerResponse response) throws IOException {
 	  	String testUri = request.getParameter("performanceReportTest");
 	    PerformanceReportPosition performanceReportPosition = new PerformanceReportPosition();
@@ -71,53 +103,9 @@ public class TestSuiteReportDetail implements ModelObject{
 	      response.sendRedirect2(request.getContextPath() + "/images/headless.png");
 	      return;
 	    }
-	    DataSetBuilder<String, NumberOnlyBuildLabel> dataSetBuilderAverage = new DataSetBuilder<String, NumberOnlyBuildLabel>();
-	    List<? extends AbstractBuild<?, ?>> builds = getProject().getBuilds();
-	    Range buildsLimits = this.buildsLimits;
-
-	    int nbBuildsToAnalyze = builds.size();
-	    for (AbstractBuild<?, ?> build : builds) {
-	      if (buildsLimits.in(nbBuildsToAnalyze)) {
-	    	  
-	    	if (!buildsLimits.includedByStep(build.number)){
-	  	        	continue;
-	  	    }  
-	        NumberOnlyBuildLabel label = new NumberOnlyBuildLabel(build);
-	        PerformanceBuildAction performanceBuildAction = build.getAction(PerformanceBuildAction.class);
-	        if (performanceBuildAction == null) {
-	          continue;
-	        }
-	        PerformanceReport performanceReport = performanceBuildAction.getPerformanceReportMap().getPerformanceReport(
-	            this.filename);
-	        if (performanceReport == null) {
-	          nbBuildsToAnalyze--;
-	          continue;
-	        }
-	        
-	        List<HttpSample> allSamples = new ArrayList<HttpSample>();
-	        for (UriReport currentReport : performanceReport.getUriReportMap().values()) {
-	          allSamples.addAll(currentReport.getHttpSampleList());
-	        }
-	        Collections.sort(allSamples);
-	        for(HttpSample sample : allSamples){
-	        	if (sample.getUri().equals(testUri))
-	        	{
-		        	if (sample.hasError()){
-		        		// we set duration as 0 for tests failed because of errors
-		        		dataSetBuilderAverage.add(0,
-		                        sample.getUri(), label);
-		        	}
-		        	else{
-		        	dataSetBuilderAverage.add(sample.getDuration(),
-		                    sample.getUri(), label);
-		        	}
-	        	}
-	      }
-	      }
-	      nbBuildsToAnalyze--;
-	    }
 	    ChartUtil.generateGraph(request, response,
-	        createRespondingTimeChart(dataSetBuilderAverage.build()), 600, 200);
+	        createRespondingTimeChart(projectAction.getTrend(graphConf, filename).getTestCaseDataSet(
+	            Collections.singleton(testUri)).build()), 600, 200);
 	  }
   
   
@@ -170,46 +158,84 @@ public class TestSuiteReportDetail implements ModelObject{
 	    return chart;
 	  }
 	  
+	  /**
+	   * Gets the test cases of the report, either the slowest first, or those
+	   * seen in the builds of the graph configuration in alphabetical order,
+	   * from the {@link PerformanceCatalog} without loading any build. The
+	   * alphabetical list is shown {@link PerformanceTrend#MAX_TEST_CASES} test
+	   * cases per page.
+	   */
 	  public List<String> getPerformanceReportTestCaseList() {
-		    this.performanceReportTestCaseList = new ArrayList<String>(0);
-		    String performanceReportNameFile = this.getFilename();
-		    		    
-		    List<? extends AbstractBuild<?, ?>> builds = getProject().getBuilds();
-
-		    int nbBuildsToAnalyze = builds.size();
-		    for (AbstractBuild<?, ?> build : builds) {
-		      
-		    
-		        PerformanceBuildAction performanceBuildAction = build.getAction(PerformanceBuildAction.class);
-		        if (performanceBuildAction == null) {
-		          continue;
-		        }
-		        
-		        PerformanceReport performanceReport = performanceBuildAction.getPerformanceReportMap().getPerformanceReport(
-		            performanceReportNameFile);
-		        if (performanceReport == null) {
-		          nbBuildsToAnalyze--;
-		          continue;
-		        }
-		        
-		        List<HttpSample> allSamples = new ArrayList<HttpSample>();
-		        for (UriReport currentReport : performanceReport.getUriReportMap().values()) {
-		          allSamples.addAll(currentReport.getHttpSampleList());
-		        }
-		        Collections.sort(allSamples);
-		        for(HttpSample sample : allSamples){
-		        	if (!performanceReportTestCaseList.contains(sample.getUri())){
-		        		performanceReportTestCaseList.add(sample.getUri());
-		        	}
-		        }
-		      
-		      nbBuildsToAnalyze--;
+		    if (testCaseCount > 0) {
+		      this.performanceReportTestCaseList = projectAction.getTrend(
+		          graphConf, filename).getSlowestUris(testCaseCount);
+		      this.testCaseTotal = this.performanceReportTestCaseList.size();
+		      this.firstShown = 0;
+		      return this.performanceReportTestCaseList;
+		    }
+		    List<? extends AbstractBuild<?, ?>> builds = projectAction.getFirstAndLastBuild(
+		        graphConf, getProject().getBuilds()).getBuilds(getProject().getBuilds());
+		    if (builds.isEmpty()) {
+		      this.performanceReportTestCaseList = new ArrayList<String>(0);
+		      this.testCaseTotal = 0;
+		      this.firstShown = 0;
+		    } else {
+		      // builds are ordered newest first
+		      List<String> testCases = PerformanceCatalog.get(getProject()).getUris(
+		          filename, builds.get(builds.size() - 1).number,
+		          builds.get(0).number);
+		      this.testCaseTotal = testCases.size();
+		      int from = Math.min((getPage() - 1) * PerformanceTrend.MAX_TEST_CASES,
+		          testCases.size());
+		      this.firstShown = from;
+		      this.performanceReportTestCaseList = testCases.subList(from,
+		          Math.min(from + PerformanceTrend.MAX_TEST_CASES, testCases.size()));
 		    }
-		    		    
-		    Collections.sort(performanceReportTestCaseList);
-
 		    return this.performanceReportTestCaseList;
 		  }
+
+	  /**
+	   * @return the number of the test cases listed, on all the pages, as of
+	   *         the last call to {@link #getPerformanceReportTestCaseList()}
+	   */
+	  public int getTestCaseTotal() {
+	    return testCaseTotal;
+	  }
+
+	  /**
+	   * @return the position of the first test case shown among all those
+	   *         listed, from 1
+	   */
+	  public int getFirstShown() {
+	    return firstShown + 1;
+	  }
+
+	  /**
+	   * @return the position of the last test case shown among all those
+	   *         listed, from 1
+	   */
+	  public int getLastShown() {
+	    return firstShown + performanceReportTestCaseList.size();
+	  }
+
+	  /**
+	   * @return the page of test cases shown, 1 for the slowest test cases
+	   */
+	  public int getPage() {
+	    return testCaseCount > 0 ? 1 : page;
+	  }
+
+	  /**
+	   * @return the number of pages of test cases, as of the last call to
+	   *         {@link #getPerformanceReportTestCaseList()}
+	   */
+	  public int getPageCount() {
+	    if (testCaseCount > 0) {
+	      return 1;
+	    }
+	    return Math.max((testCaseTotal + PerformanceTrend.MAX_TEST_CASES - 1)
+	        / PerformanceTrend.MAX_TEST_CASES, 1);
+	  }
   
 	  
   public AbstractProject<?, ?> getProject() {
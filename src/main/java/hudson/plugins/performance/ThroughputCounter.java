@@ -0,0 +1,316 @@
+package hudson.plugins.performance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the request rate of samples as they are added, without keeping or
+ * sorting them.
+ *
+ * Besides the rate over the whole run, the counter keeps the number of samples
+ * started in each second, so that the lowest rate sustained over any window of
+ * a few seconds can be told: a run whose load generator stalled halfway has a
+ * fair overall rate but a poor worst window.
+ *
+ * Samples are only counted within a span of at most {@link #MAX_SPAN_SECONDS},
+ * so that a sample with a bogus time, such as 0, doesn't stretch the run over
+ * decades. The span kept is the one holding the most samples, picked from the
+ * per-second counts once all samples are in, so the bogus sample is left out
+ * whether it comes first or last; samples outside it are counted as outliers.
+ */
+public class ThroughputCounter {
+
+  /**
+   * Longest span of samples counted, in seconds: two days by default.
+   */
+  static final int MAX_SPAN_SECONDS = Integer.getInteger(
+      ThroughputCounter.class.getName() + ".maxSpanSeconds", 2 * 24 * 3600);
+
+  /**
+   * Number of seconds counted together in a {@link Chunk}.
+   */
+  private static final int CHUNK_SECONDS = 64;
+
+  /**
+   * Number of samples started in each second of a chunk of seconds, with the
+   * millisecond the earliest and the latest of them started at.
+   */
+  private static class Chunk {
+    final int[] counts = new int[CHUNK_SECONDS];
+    final short[] firstMillis = new short[CHUNK_SECONDS];
+    final short[] lastMillis = new short[CHUNK_SECONDS];
+
+    void add(int index, int count, int first, int last) {
+      if (counts[index] == 0 || first < firstMillis[index]) {
+        firstMillis[index] = (short) first;
+      }
+      if (counts[index] == 0 || last > lastMillis[index]) {
+        lastMillis[index] = (short) last;
+      }
+      counts[index] += count;
+    }
+  }
+
+  /**
+   * The samples kept, once picked from the per-second counts.
+   */
+  private static class Span {
+    int count;
+
+    /**
+     * Start times of the earliest and the latest sample, in milliseconds.
+     */
+    long first;
+    long last;
+
+    long firstSecond;
+
+    /**
+     * Number of samples started in each second from {@link #firstSecond}.
+     */
+    int[] perSecond = new int[0];
+  }
+
+  /**
+   * Chunks keyed by their first second divided by {@link #CHUNK_SECONDS}, so
+   * that only the seconds around samples take memory, however far apart.
+   */
+  private final Map<Long, Chunk> chunks = new HashMap<Long, Chunk>();
+
+  /**
+   * The chunk samples were last added to: samples are mostly in order, so
+   * this saves looking most of them up.
+   */
+  private Chunk lastChunk;
+
+  private long lastChunkKey;
+
+  /**
+   * Number of samples added, outliers included.
+   */
+  private int total;
+
+  /**
+   * Duration of the first sample added, for runs of a single sample.
+   */
+  private long firstDuration;
+
+  /**
+   * Samples kept, or null if samples were added since they were picked.
+   */
+  private Span span;
+
+  public void add(HttpSample sample) {
+    if (sample.getDate() == null) {
+      return;
+    }
+    if (total == 0) {
+      firstDuration = sample.getDuration();
+    }
+    long time = sample.getDate().getTime();
+    long second = secondOf(time);
+    int millis = (int) (time - second * 1000);
+    getChunk(second >> 6).add((int) (second & (CHUNK_SECONDS - 1)), 1, millis,
+        millis);
+    total++;
+    span = null;
+  }
+
+  /**
+   * @return the second a time in milliseconds falls in, rounding down
+   */
+  static long secondOf(long time) {
+    return time / 1000 - (time % 1000 < 0 ? 1 : 0);
+  }
+
+  private Chunk getChunk(long key) {
+    if (lastChunk == null || key != lastChunkKey) {
+      lastChunk = chunks.get(key);
+      if (lastChunk == null) {
+        lastChunk = new Chunk();
+        chunks.put(key, lastChunk);
+      }
+      lastChunkKey = key;
+    }
+    return lastChunk;
+  }
+
+  /**
+   * @return whether samples started between the given seconds span at most
+   *         {@link #MAX_SPAN_SECONDS}
+   */
+  static boolean isWithinSpan(long firstSecond, long lastSecond) {
+    return lastSecond - firstSecond < MAX_SPAN_SECONDS;
+  }
+
+  /**
+   * Picks the span of at most {@link #MAX_SPAN_SECONDS} holding the most
+   * samples, the earliest of them if several hold as many.
+   *
+   * @param seconds
+   *            seconds samples started in, in increasing order
+   * @param counts
+   *            number of samples started in each of these seconds
+   * @return the index of the first second of the span in
+   *         <code>seconds</code>, and the index after its last second
+   */
+  static int[] densestSpan(long[] seconds, int[] counts) {
+    int bestFrom = 0;
+    int bestTo = 0;
+    long best = -1;
+    long sum = 0;
+    int from = 0;
+    for (int to = 0; to < seconds.length; to++) {
+      sum += counts[to];
+      while (!isWithinSpan(seconds[from], seconds[to])) {
+        sum -= counts[from++];
+      }
+      if (sum > best) {
+        best = sum;
+        bestFrom = from;
+        bestTo = to + 1;
+      }
+    }
+    return new int[] { bestFrom, bestTo };
+  }
+
+  private Span getSpan() {
+    if (span != null) {
+      return span;
+    }
+    List<Long> keys = new ArrayList<Long>(chunks.keySet());
+    Collections.sort(keys);
+    int occupied = 0;
+    for (Chunk chunk : chunks.values()) {
+      for (int count : chunk.counts) {
+        if (count > 0) {
+          occupied++;
+        }
+      }
+    }
+    long[] seconds = new long[occupied];
+    int[] counts = new int[occupied];
+    int n = 0;
+    for (Long key : keys) {
+      Chunk chunk = chunks.get(key);
+      for (int i = 0; i < CHUNK_SECONDS; i++) {
+        if (chunk.counts[i] > 0) {
+          seconds[n] = key * CHUNK_SECONDS + i;
+          counts[n++] = chunk.counts[i];
+        }
+      }
+    }
+    span = new Span();
+    int[] range = densestSpan(seconds, counts);
+    if (range[0] == range[1]) {
+      return span;
+    }
+    long firstSecond = seconds[range[0]];
+    long lastSecond = seconds[range[1] - 1];
+    span.firstSecond = firstSecond;
+    span.first = firstSecond * 1000
+        + chunks.get(firstSecond >> 6).firstMillis[(int) (firstSecond & (CHUNK_SECONDS - 1))];
+    span.last = lastSecond * 1000
+        + chunks.get(lastSecond >> 6).lastMillis[(int) (lastSecond & (CHUNK_SECONDS - 1))];
+    span.perSecond = new int[(int) (lastSecond - firstSecond) + 1];
+    for (int i = range[0]; i < range[1]; i++) {
+      span.perSecond[(int) (seconds[i] - firstSecond)] = counts[i];
+      span.count += counts[i];
+    }
+    return span;
+  }
+
+  /**
+   * Adds the samples counted by another counter.
+   */
+  public void add(ThroughputCounter other) {
+    if (other.total == 0) {
+      return;
+    }
+    if (total == 0) {
+      firstDuration = other.firstDuration;
+    }
+    for (Map.Entry<Long, Chunk> entry : other.chunks.entrySet()) {
+      Chunk from = entry.getValue();
+      Chunk to = getChunk(entry.getKey());
+      for (int i = 0; i < CHUNK_SECONDS; i++) {
+        if (from.counts[i] > 0) {
+          to.add(i, from.counts[i], from.firstMillis[i], from.lastMillis[i]);
+        }
+      }
+    }
+    total += other.total;
+    span = null;
+  }
+
+  public int getCount() {
+    return getSpan().count;
+  }
+
+  /**
+   * @return the second the earliest sample kept started in
+   */
+  long getFirstSecond() {
+    return getSpan().firstSecond;
+  }
+
+  /**
+   * @return the second the latest sample kept started in, before
+   *         {@link #getFirstSecond()} if no sample was kept
+   */
+  long getLastSecond() {
+    Span span = getSpan();
+    return span.firstSecond + span.perSecond.length - 1;
+  }
+
+  /**
+   * @return the number of samples left out for being outside the span of
+   *         {@link #MAX_SPAN_SECONDS} holding the most samples
+   */
+  public int getOutliers() {
+    return total - getSpan().count;
+  }
+
+  /**
+   * @return the number of requests per second over the whole run, 0 if there
+   *         are no samples
+   */
+  public double getRate() {
+    Span span = getSpan();
+    if (span.count == 0) {
+      return 0;
+    }
+    if (span.count == 1 || span.last == span.first) {
+      // only one request sent in duration of the single sample
+      return firstDuration > 0 ? (double) span.count * 1000 / firstDuration : 0;
+    }
+    return (double) (span.count - 1) * 1000 / (span.last - span.first);
+  }
+
+  /**
+   * @param windowSeconds
+   *            length of the windows, in seconds
+   * @return the lowest number of requests per second over any window of the
+   *         given length, or the rate over the whole run if it is shorter
+   */
+  public double getWorstRate(int windowSeconds) {
+    int[] perSecond = getSpan().perSecond;
+    int seconds = perSecond.length;
+    if (seconds == 0 || windowSeconds <= 0 || seconds <= windowSeconds) {
+      return getRate();
+    }
+    long sum = 0;
+    for (int i = 0; i < windowSeconds; i++) {
+      sum += perSecond[i];
+    }
+    long worst = sum;
+    for (int i = windowSeconds; i < seconds; i++) {
+      sum += perSecond[i] - perSecond[i - windowSeconds];
+      worst = Math.min(worst, sum);
+    }
+    return (double) worst / windowSeconds;
+  }
+}
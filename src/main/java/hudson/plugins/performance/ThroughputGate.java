@@ -0,0 +1,126 @@
+package hudson.plugins.performance;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the reports and URIs whose throughput dropped more than a given
+ * percentage against a baseline build, from the summaries stored with both
+ * builds.
+ */
+public class ThroughputGate {
+
+  /**
+   * A report, or a URI of a report, slower to serve requests than in the
+   * baseline.
+   */
+  public static class Drop implements Comparable<Drop> {
+
+    private final String reportFileName;
+
+    /**
+     * The URI, or null for the whole report.
+     */
+    private final String uri;
+
+    private final double baselineThroughput;
+
+    private final double throughput;
+
+    Drop(String reportFileName, String uri, double baselineThroughput,
+        double throughput) {
+      this.reportFileName = reportFileName;
+      this.uri = uri;
+      this.baselineThroughput = baselineThroughput;
+      this.throughput = throughput;
+    }
+
+    public String getReportFileName() {
+      return reportFileName;
+    }
+
+    public String getUri() {
+      return uri;
+    }
+
+    public double getBaselineThroughput() {
+      return baselineThroughput;
+    }
+
+    public double getThroughput() {
+      return throughput;
+    }
+
+    /**
+     * @return the decrease of the throughput, in percent of the baseline
+     */
+    public double getDecrease() {
+      return (baselineThroughput - throughput) / baselineThroughput * 100;
+    }
+
+    /**
+     * Orders the worst drops first.
+     */
+    public int compareTo(Drop other) {
+      return Double.compare(other.getDecrease(), getDecrease());
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s %s: %.1f req/s -> %.1f req/s (-%d%%)",
+          reportFileName, uri == null ? "(all URIs)" : uri,
+          baselineThroughput, throughput, Math.round(getDecrease()));
+    }
+  }
+
+  /**
+   * Highest decrease of the throughput tolerated, in percent.
+   */
+  private final double maxDecrease;
+
+  public ThroughputGate(double maxDecrease) {
+    this.maxDecrease = maxDecrease;
+  }
+
+  /**
+   * Compares the throughput of the reports of a build, and of their URIs, with
+   * the same reports and URIs in the baseline. Those the baseline doesn't have,
+   * or has no throughput for, are skipped.
+   *
+   * @param summaries
+   *            the summaries of the build keyed by report file name
+   * @param baseline
+   *            the summaries of the baseline keyed by report file name
+   * @return the drops of more than the tolerated decrease, the worst first
+   */
+  public List<Drop> compare(Map<String, PerformanceReportSummary> summaries,
+      Map<String, PerformanceReportSummary> baseline) {
+    List<Drop> drops = new ArrayList<Drop>();
+    for (PerformanceReportSummary summary : summaries.values()) {
+      PerformanceReportSummary baselineSummary = baseline.get(summary.getReportFileName());
+      if (baselineSummary == null) {
+        continue;
+      }
+      check(drops, new Drop(summary.getReportFileName(), null,
+          baselineSummary.getThroughput(), summary.getThroughput()));
+      for (UriReportSummary uriSummary : summary.getUriSummaries()) {
+        UriReportSummary baselineUriSummary = baselineSummary.getUriSummary(uriSummary.getStaplerUri());
+        if (baselineUriSummary != null) {
+          check(drops, new Drop(summary.getReportFileName(),
+              uriSummary.getUri(), baselineUriSummary.getThroughput(),
+              uriSummary.getThroughput()));
+        }
+      }
+    }
+    Collections.sort(drops);
+    return drops;
+  }
+
+  private void check(List<Drop> drops, Drop drop) {
+    if (drop.getBaselineThroughput() > 0 && drop.getDecrease() > maxDecrease) {
+      drops.add(drop);
+    }
+  }
+}
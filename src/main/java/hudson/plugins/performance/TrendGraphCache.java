@@ -0,0 +1,140 @@
+package hudson.plugins.performance;
+
+import hudson.Util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.jfree.chart.ChartUtilities;
+import org.jfree.chart.JFreeChart;
+import org.kohsuke.stapler.StaplerRequest;
+import org.kohsuke.stapler.StaplerResponse;
+
+/**
+ * Caches the rendered PNGs of the trend graphs.
+ *
+ * A graph is identified by a key that changes whenever its content may change,
+ * so that pages refreshing the same graphs neither walk the builds nor render
+ * the chart again, and clients that already have the image, as told by its
+ * ETag, get a 304.
+ */
+public class TrendGraphCache {
+
+  private static final int MAX_ENTRIES = Integer.getInteger(
+      TrendGraphCache.class.getName() + ".maxEntries", 200);
+
+  private static final Map<String, byte[]> CACHE = Collections.synchronizedMap(new LinkedHashMap<String, byte[]>(
+      16, 0.75f, true) {
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  });
+
+  private TrendGraphCache() {
+  }
+
+  /**
+   * Answers the request from the cache: with a 304 if the client already has
+   * the graph, with the cached PNG otherwise.
+   *
+   * @param key
+   *            identifies the graph, excluding its size
+   * @param lastModified
+   *            when the graph last changed, or 0 if unknown
+   * @return true if the response was sent, false if the graph has to be
+   *         rendered with {@link #generateGraph}
+   */
+  public static boolean sendCached(StaplerRequest request,
+      StaplerResponse response, String key, long lastModified, int defaultW,
+      int defaultH) throws IOException {
+    String sizedKey = getSizedKey(request, key, defaultW, defaultH);
+    String etag = getETag(sizedKey);
+    // only the ETag tells the key: a graph whose configuration cookie
+    // changed or whose build was deleted has the same last modification
+    if (etag.equals(request.getHeader("If-None-Match"))) {
+      sendNotModified(response, etag, lastModified);
+      return true;
+    }
+    byte[] png = CACHE.get(sizedKey);
+    PerformanceDiagnostics.lookup("Trend graphs", png != null);
+    if (png == null) {
+      return false;
+    }
+    send(response, png, etag, lastModified);
+    return true;
+  }
+
+  /**
+   * Renders the chart, caches it and sends it.
+   */
+  public static void generateGraph(StaplerRequest request,
+      StaplerResponse response, String key, long lastModified,
+      JFreeChart chart, int defaultW, int defaultH) throws IOException {
+    String sizedKey = getSizedKey(request, key, defaultW, defaultH);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ChartUtilities.writeChartAsPNG(out, chart,
+        getSize(request, "width", defaultW),
+        getSize(request, "height", defaultH));
+    byte[] png = out.toByteArray();
+    CACHE.put(sizedKey, png);
+    send(response, png, getETag(sizedKey), lastModified);
+  }
+
+  private static void send(StaplerResponse response, byte[] png, String etag,
+      long lastModified) throws IOException {
+    response.setContentType("image/png");
+    setCacheHeaders(response, etag, lastModified);
+    response.setContentLength(png.length);
+    OutputStream out = response.getOutputStream();
+    out.write(png);
+    out.close();
+  }
+
+  private static void sendNotModified(StaplerResponse response, String etag,
+      long lastModified) {
+    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    setCacheHeaders(response, etag, lastModified);
+  }
+
+  private static void setCacheHeaders(StaplerResponse response, String etag,
+      long lastModified) {
+    // the graph configuration lives in a cookie, so always revalidate
+    response.setHeader("Cache-Control", "private, max-age=0, must-revalidate");
+    response.setHeader("ETag", etag);
+    if (lastModified > 0) {
+      response.setDateHeader("Last-Modified", lastModified);
+    }
+  }
+
+  private static String getSizedKey(StaplerRequest request, String key,
+      int defaultW, int defaultH) {
+    return key + GraphConfigurationDetail.SEPARATOR
+        + getSize(request, "width", defaultW) + "x"
+        + getSize(request, "height", defaultH);
+  }
+
+  private static String getETag(String sizedKey) {
+    return '"' + Util.getDigestOf(sizedKey) + '"';
+  }
+
+  private static int getSize(StaplerRequest request, String name,
+      int defaultValue) {
+    String value = request.getParameter(name);
+    if (value == null) {
+      return defaultValue;
+    }
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      return defaultValue;
+    }
+  }
+}
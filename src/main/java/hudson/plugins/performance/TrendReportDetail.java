@@ -1,52 +1,75 @@
 package hudson.plugins.performance;
 
+import hudson.Util;
 import hudson.model.AbstractProject;
 import hudson.model.ModelObject;
+import hudson.util.ChartUtil.NumberOnlyBuildLabel;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Date;
-import java.util.GregorianCalendar;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
-import javax.servlet.ServletException;
-import javax.servlet.http.Cookie;
-
-import net.sf.json.JSONException;
-import net.sf.json.JSONObject;
-
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang.StringUtils;
 import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
-import org.jfree.data.category.CategoryDataset;
-
 /**
- * Configures the trend graph of this plug-in.
+ * Table of the trend of a report, one row per build, paginated and sorted on
+ * the server, and downloadable as CSV or JSON.
  */
 public class TrendReportDetail implements ModelObject,
     Iterable<TrendReportDetail.Row> {
 
+  /**
+   * Keys of the columns the table can be sorted on, the build first.
+   */
+  private static final List<String> SORT_KEYS = Arrays.asList("build",
+      "average", "median", "line90", "min", "max", "errorPercent", "errors");
+
+  private static final int DEFAULT_PAGE_SIZE = 50;
+
   private AbstractProject<?, ?> project;
   private String filename;
-  private CategoryDataset dataSet;
+  private PerformanceTrend trend;
+
+  /**
+   * Index in {@link #SORT_KEYS} of the column the rows are sorted on.
+   */
+  private int sortColumn;
+  private boolean descending;
+  private int page;
+  private int pageSize;
 
   public TrendReportDetail(final AbstractProject<?, ?> project,
       final String pluginName, final StaplerRequest request, String filename,
-      CategoryDataset dataSet) {
+      PerformanceTrend trend) {
     this.project = project;
     this.filename = filename;
-    this.dataSet = dataSet;
+    this.trend = trend;
+    this.sortColumn = Math.max(SORT_KEYS.indexOf(request.getParameter("sort")), 0);
+    this.descending = "desc".equals(request.getParameter("order"));
+    this.page = Math.max(getIntParameter(request, "page", 1), 1);
+    this.pageSize = getIntParameter(request, "pageSize", DEFAULT_PAGE_SIZE);
+    if (pageSize <= 0) {
+      pageSize = DEFAULT_PAGE_SIZE;
+    }
+  }
+
+  private static int getIntParameter(StaplerRequest request, String name,
+      int defaultValue) {
+    String value = request.getParameter(name);
+    if (value != null) {
+      try {
+        return Integer.parseInt(value);
+      } catch (NumberFormatException e) {
+        // fall back to the default value
+      }
+    }
+    return defaultValue;
   }
 
   public AbstractProject<?, ?> getProject() {
@@ -61,59 +84,154 @@ public class TrendReportDetail implements ModelObject,
     return Messages.TrendReportDetail_DisplayName();
   }
 
+  /**
+   * Iterates over the rows of the current page.
+   */
   public Iterator<Row> iterator() {
-    return new RowIterator();
+    return getRows().iterator();
   }
 
   public Iterator<Row> getIterator() {
     return iterator();
   }
 
-  public List getColumnLabels() {
-    return dataSet.getRowKeys();
+  public List<String> getColumnLabels() {
+    return Arrays.asList(Messages.ProjectAction_Average(),
+        Messages.ProjectAction_Median(), Messages.ProjectAction_Line90(),
+        Messages.ProjectAction_Minimum(), Messages.ProjectAction_Maximum(),
+        Messages.ProjectAction_PercentageOfErrors(),
+        Messages.ProjectAction_Errors());
+  }
+
+  /**
+   * @return the keys to sort on by the columns of {@link #getColumnLabels()}
+   */
+  public List<String> getColumnKeys() {
+    return SORT_KEYS.subList(1, SORT_KEYS.size());
   }
 
-  public class RowIterator implements Iterator<Row> {
+  public String getSort() {
+    return SORT_KEYS.get(sortColumn);
+  }
 
-    private int entry = 0;
+  public boolean isDescending() {
+    return descending;
+  }
 
-    public boolean hasNext() {
-      return (entry < dataSet.getColumnCount());
+  public int getPage() {
+    return page;
+  }
+
+  public int getPageSize() {
+    return pageSize;
+  }
+
+  public int getPageCount() {
+    return Math.max((trend.getPoints().size() + pageSize - 1) / pageSize, 1);
+  }
+
+  /**
+   * @return the query string showing another page or order of the table
+   */
+  public String getQuery(String sort, boolean descending, int page) {
+    return "?performanceReportPosition=" + Util.rawEncode(filename)
+        + "&sort=" + sort + "&order=" + (descending ? "desc" : "asc")
+        + "&page=" + page + "&pageSize=" + pageSize;
+  }
+
+  /**
+   * @return the rows of the current page, sorted
+   */
+  public List<Row> getRows() {
+    List<Row> rows = new ArrayList<Row>(trend.getPoints().size());
+    for (PerformanceTrend.Point point : trend.getPoints()) {
+      rows.add(new Row(point));
     }
+    Collections.sort(rows, new Comparator<Row>() {
+
+      public int compare(Row row1, Row row2) {
+        int result = compareValues(row1.getSortValue(sortColumn),
+            row2.getSortValue(sortColumn));
+        if (result == 0) {
+          result = compareValues(row1.getSortValue(0), row2.getSortValue(0));
+        }
+        return descending ? -result : result;
+      }
+    });
+    int fromIndex = Math.min((page - 1) * pageSize, rows.size());
+    int toIndex = Math.min(fromIndex + pageSize, rows.size());
+    return rows.subList(fromIndex, toIndex);
+  }
+
+  private static int compareValues(long value1, long value2) {
+    return value1 < value2 ? -1 : (value1 == value2 ? 0 : 1);
+  }
 
-    public Row next() {
-      return new Row(entry++);
+  /**
+   * Streams the whole trend as CSV.
+   */
+  public void doCsv(StaplerRequest request, StaplerResponse response)
+      throws IOException {
+    response.setContentType("text/csv;charset=UTF-8");
+    response.setHeader("Content-Disposition", "attachment; filename=\""
+        + filename + ".csv\"");
+    Writer out = response.getCompressedWriter(request);
+    try {
+      trend.writeCsv(out, null);
+    } finally {
+      out.close();
     }
+  }
 
-    public void remove() {
-      throw new UnsupportedOperationException();
+  /**
+   * Streams the whole trend as JSON.
+   */
+  public void doJson(StaplerRequest request, StaplerResponse response)
+      throws IOException {
+    response.setContentType("application/json;charset=UTF-8");
+    Writer out = response.getCompressedWriter(request);
+    try {
+      trend.writeJson(out, null);
+    } finally {
+      out.close();
     }
   }
 
-  public class Row {
+  public static class Row {
 
-    int entry;
+    private final PerformanceTrend.Point point;
 
-    public Row(int entry) {
-      this.entry = entry;
-    }
+    private final List<Number> values;
 
-    public Object getLabel() {
-      return dataSet.getColumnKey(entry);
+    Row(PerformanceTrend.Point point) {
+      this.point = point;
+      PerformanceReportSummary summary = point.getSummary();
+      values = new ArrayList<Number>(7);
+      values.add(summary.getAverage());
+      values.add(summary.getMedian());
+      values.add(summary.get90Line());
+      values.add(summary.getMin());
+      values.add(summary.getMax());
+      values.add(Math.round(summary.errorPercent()));
+      values.add(summary.countErrors());
     }
 
-    public List getLabels() {
-      return dataSet.getRowKeys();
+    public NumberOnlyBuildLabel getLabel() {
+      return point.getLabel();
     }
 
     public List<Number> getValues() {
-      int count = dataSet.getRowCount();
-      List<Number> list = new ArrayList<Number>(count);
-      for (int i = 0; i < count; i++) {
-        list.add(dataSet.getValue(dataSet.getRowKey(i),
-            dataSet.getColumnKey(entry)));
+      return values;
+    }
+
+    /**
+     * @return the value of the column of {@link #SORT_KEYS} at the given index
+     */
+    long getSortValue(int column) {
+      if (column == 0) {
+        return point.getBuild().number;
       }
-      return list;
+      return values.get(column - 1).longValue();
     }
   }
 }
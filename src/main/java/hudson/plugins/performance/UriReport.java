@@ -18,9 +18,15 @@ public class UriReport extends AbstractReport implements ModelObject,
   public final static String END_PERFORMANCE_PARAMETER = ".endperformanceparameter";
 
   /**
-   * Individual HTTP invocations to this URI and how they went.
+   * Individual HTTP invocations to this URI and how they went. Only the first
+   * one once the samples are aggregated.
    */
-  private final List<HttpSample> httpSampleList = new ArrayList<HttpSample>();
+  private List<HttpSample> httpSampleList = new ArrayList<HttpSample>();
+
+  /**
+   * Aggregates of the samples, null while they are kept.
+   */
+  private SampleAggregate aggregate;
 
   /**
    * The parent object to which this object belongs.
@@ -33,7 +39,12 @@ public class UriReport extends AbstractReport implements ModelObject,
    */
   private final String staplerUri;
   
-  private UriReport lastBuildUriReport;
+  /**
+   * Summary of this URI in the baseline build, looked up on first use.
+   */
+  private UriReportSummary lastBuildUriReport;
+
+  private LatencyComparison comparison;
 
   private String uri;
 
@@ -44,7 +55,41 @@ public class UriReport extends AbstractReport implements ModelObject,
   }
 
   public void addHttpSample(HttpSample httpSample) {
-    httpSampleList.add(httpSample);
+    if (aggregate == null) {
+      httpSampleList.add(httpSample);
+      return;
+    }
+    aggregate.add(httpSample);
+    if (httpSampleList.isEmpty()) {
+      httpSampleList.add(httpSample);
+    }
+  }
+
+  /**
+   * Stops keeping the samples and only keeps their aggregates from now on.
+   * The first sample is still kept, for the parsers that record aggregates of
+   * their own in it.
+   */
+  void aggregate() {
+    if (aggregate != null) {
+      return;
+    }
+    aggregate = new SampleAggregate();
+    for (HttpSample currentSample : httpSampleList) {
+      aggregate.add(currentSample);
+    }
+    List<HttpSample> first = new ArrayList<HttpSample>(1);
+    if (!httpSampleList.isEmpty()) {
+      first.add(httpSampleList.get(0));
+    }
+    httpSampleList = first;
+  }
+
+  /**
+   * @return whether only the aggregates of the samples are kept
+   */
+  public boolean isAggregated() {
+    return aggregate != null;
   }
 
   public int compareTo(UriReport uriReport) {
@@ -55,6 +100,9 @@ public class UriReport extends AbstractReport implements ModelObject,
   }
 
   public int countErrors() {
+    if (aggregate != null) {
+      return aggregate.countErrors();
+    }
     int nbError = 0;
     for (HttpSample currentSample : httpSampleList) {
       if (!currentSample.isSuccessful()) {
@@ -69,6 +117,9 @@ public class UriReport extends AbstractReport implements ModelObject,
   }
 
   public long getAverage() {
+    if (aggregate != null) {
+      return aggregate.getAverage();
+    }
     long average = 0;
     for (HttpSample currentSample : httpSampleList) {
       average += currentSample.getDuration();
@@ -77,15 +128,48 @@ public class UriReport extends AbstractReport implements ModelObject,
   }
 
   public long get90Line() {
+    return getLine(.9);
+  }
+
+  public long get95Line() {
+    return getLine(.95);
+  }
+
+  public long get99Line() {
+    return getLine(.99);
+  }
+
+  public LatencyHistogram getHistogram() {
+    if (aggregate != null) {
+      return aggregate.getHistogram();
+    }
+    long[] durations = new long[httpSampleList.size()];
+    for (int i = 0; i < durations.length; i++) {
+      durations[i] = httpSampleList.get(i).getDuration();
+    }
+    return new LatencyHistogram(durations);
+  }
+
+  /**
+   * @return the duration of the sample at the given fraction of the samples
+   *         sorted by duration, 0 if there are none
+   */
+  private long getLine(double fraction) {
+    if (aggregate != null) {
+      return aggregate.getValueAtPercentile(fraction * 100);
+    }
     long result = 0;
     Collections.sort(httpSampleList);
     if (httpSampleList.size() > 0) {
-      result = httpSampleList.get((int) (httpSampleList.size() * .9)).getDuration();
+      result = httpSampleList.get((int) (httpSampleList.size() * fraction)).getDuration();
     }
     return result;
   }
   
   public String getHttpCode() {
+    if (aggregate != null) {
+      return aggregate.getHttpCode();
+    }
     String result = "";
     
     for (HttpSample currentSample : httpSampleList) {
@@ -98,15 +182,13 @@ public class UriReport extends AbstractReport implements ModelObject,
   }
 
   public long getMedian() {
-    long result = 0;
-    Collections.sort(httpSampleList);
-    if (httpSampleList.size() > 0) {
-      result = httpSampleList.get((int) (httpSampleList.size() * .5)).getDuration();
-    }
-    return result;
+    return getLine(.5);
   }
 
   public long getAverageBytesTransferred() {
+    if (aggregate != null) {
+      return aggregate.getAverageBytesTransferred();
+    }
     long average = 0;
     for (HttpSample currentSample : httpSampleList) {
       average += currentSample.getBytes();
@@ -114,6 +196,41 @@ public class UriReport extends AbstractReport implements ModelObject,
     return average / size();
   }
 
+  /**
+   * @return the number of requests per second to this URI
+   */
+  public double getThroughput() {
+    ThroughputCounter counter = new ThroughputCounter();
+    countThroughput(counter);
+    return counter.getRate();
+  }
+
+  /**
+   * @param windowSeconds
+   *            length of the windows in seconds
+   * @return the 99% line and percentage of errors of this URI over every
+   *         window of the given length
+   */
+  public SlidingWindowLatency getSlidingWindows(int windowSeconds) {
+    if (aggregate != null) {
+      return new SlidingWindowLatency(aggregate, windowSeconds);
+    }
+    return new SlidingWindowLatency(httpSampleList, windowSeconds);
+  }
+
+  /**
+   * Adds the samples of this URI to a throughput counter.
+   */
+  void countThroughput(ThroughputCounter counter) {
+    if (aggregate != null) {
+      counter.add(aggregate.getThroughputCounter());
+      return;
+    }
+    for (HttpSample currentSample : httpSampleList) {
+      counter.add(currentSample);
+    }
+  }
+
   public AbstractBuild<?, ?> getBuild() {
     return performanceReport.getBuild();
   }
@@ -131,6 +248,9 @@ public class UriReport extends AbstractReport implements ModelObject,
   }
 
   public long getMax() {
+    if (aggregate != null) {
+      return aggregate.getMax();
+    }
     long max = Long.MIN_VALUE;
     for (HttpSample currentSample : httpSampleList) {
       max = Math.max(max, currentSample.getDuration());
@@ -139,6 +259,9 @@ public class UriReport extends AbstractReport implements ModelObject,
   }
 
   public long getMin() {
+    if (aggregate != null) {
+      return aggregate.getMin();
+    }
     long min = Long.MAX_VALUE;
     for (HttpSample currentSample : httpSampleList) {
       min = Math.min(min, currentSample.getDuration());
@@ -170,22 +293,37 @@ public class UriReport extends AbstractReport implements ModelObject,
   }
 
   public int size() {
+    if (aggregate != null) {
+      return aggregate.size();
+    }
     return httpSampleList.size();
   }
 
   public String encodeUriReport() throws UnsupportedEncodingException {
+    return encodeUriReport(performanceReport.getReportFileName(), getStaplerUri());
+  }
+
+  static String encodeUriReport(String reportFileName, String staplerUri)
+      throws UnsupportedEncodingException {
     StringBuilder sb = new StringBuilder(120);
-    sb.append(performanceReport.getReportFileName()).append(
-        GraphConfigurationDetail.SEPARATOR).append(getStaplerUri()).append(
+    sb.append(reportFileName).append(
+        GraphConfigurationDetail.SEPARATOR).append(staplerUri).append(
         END_PERFORMANCE_PARAMETER);
     return URLEncoder.encode(sb.toString(), "UTF-8");
   }
 
-  public void addLastBuildUriReport( UriReport lastBuildUriReport ) {
-      this.lastBuildUriReport = lastBuildUriReport;
+  UriReportSummary getLastBuildUriReport() {
+      if ( lastBuildUriReport == null && performanceReport != null ) {
+          PerformanceReportSummary lastBuildReport = performanceReport.getLastBuildReport();
+          if ( lastBuildReport != null ) {
+              lastBuildUriReport = lastBuildReport.getUriSummary( staplerUri );
+          }
+      }
+      return lastBuildUriReport;
   }
   
   public long getAverageDiff() {
+      UriReportSummary lastBuildUriReport = getLastBuildUriReport();
       if ( lastBuildUriReport == null ) {
           return 0;
       }
@@ -193,6 +331,7 @@ public class UriReport extends AbstractReport implements ModelObject,
   }
   
   public long getMedianDiff() {
+      UriReportSummary lastBuildUriReport = getLastBuildUriReport();
       if ( lastBuildUriReport == null ) {
           return 0;
       }
@@ -200,13 +339,30 @@ public class UriReport extends AbstractReport implements ModelObject,
   }
   
   public double getErrorPercentDiff() {
+      UriReportSummary lastBuildUriReport = getLastBuildUriReport();
       if ( lastBuildUriReport == null ) {
           return 0;
       }
       return errorPercent() - lastBuildUriReport.errorPercent();
   }
   
+  /**
+   * @return the test of the durations against the baseline build, or null if
+   *         it has no histogram
+   */
+  public LatencyComparison getComparison() {
+      UriReportSummary lastBuildUriReport = getLastBuildUriReport();
+      if ( lastBuildUriReport == null || lastBuildUriReport.getHistogram() == null ) {
+          return null;
+      }
+      if ( comparison == null ) {
+          comparison = LatencyComparison.compare( getHistogram(), lastBuildUriReport.getHistogram() );
+      }
+      return comparison;
+  }
+  
   public String getLastBuildHttpCodeIfChanged() {
+      UriReportSummary lastBuildUriReport = getLastBuildUriReport();
       if ( lastBuildUriReport == null ) {
           return "";
       }
@@ -219,6 +375,7 @@ public class UriReport extends AbstractReport implements ModelObject,
   }
   
   public int getSizeDiff() {
+      UriReportSummary lastBuildUriReport = getLastBuildUriReport();
       if ( lastBuildUriReport == null ) {
           return 0;
       }
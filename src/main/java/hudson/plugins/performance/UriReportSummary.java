@@ -0,0 +1,237 @@
+package hudson.plugins.performance;
+
+/**
+ * Compact aggregates of a {@link UriReport}, stored with the build as part of
+ * its {@link PerformanceReportSummary}.
+ */
+public class UriReportSummary {
+
+  private final String uri;
+
+  private final String staplerUri;
+
+  private final int size;
+
+  private final int errors;
+
+  private final double errorPercent;
+
+  private final long average;
+
+  private final long median;
+
+  private final long line90;
+
+  private final long line95;
+
+  private final long line99;
+
+  private final long min;
+
+  private final long max;
+
+  private final String httpCode;
+
+  private final long averageBytesTransferred;
+
+  private final double throughput;
+
+  /**
+   * Distribution of the durations, until it is saved in the
+   * {@link HistogramFile} of the build.
+   */
+  private transient LatencyHistogram histogram;
+
+  /**
+   * Where the distribution of the durations is saved, null until the summary
+   * is handed over to its build.
+   */
+  private transient HistogramFile histogramFile;
+
+  private transient String reportFileName;
+
+  private int sizeDiff;
+
+  private long averageDiff;
+
+  private long medianDiff;
+
+  private double errorPercentDiff;
+
+  /**
+   * Test of the durations against the baseline build, null if it wasn't there
+   * or either build has no histogram.
+   */
+  private LatencyComparison comparison;
+
+  /**
+   * HTTP codes of this URI in the baseline build, null if it wasn't there.
+   */
+  private String lastBuildHttpCode;
+
+  public UriReportSummary(UriReport uriReport) {
+    this.uri = uriReport.getUri();
+    this.staplerUri = uriReport.getStaplerUri();
+    this.size = uriReport.size();
+    this.errors = uriReport.countErrors();
+    this.errorPercent = uriReport.errorPercent();
+    this.average = uriReport.getAverage();
+    this.median = uriReport.getMedian();
+    this.line90 = uriReport.get90Line();
+    this.line95 = uriReport.get95Line();
+    this.line99 = uriReport.get99Line();
+    this.min = uriReport.getMin();
+    this.max = uriReport.getMax();
+    this.httpCode = uriReport.getHttpCode();
+    this.averageBytesTransferred = uriReport.getAverageBytesTransferred();
+    this.throughput = uriReport.getThroughput();
+    this.histogram = uriReport.getHistogram();
+  }
+
+  /**
+   * Computes the differences to the same URI in the baseline build.
+   *
+   * @param baseline
+   *            the summary in the baseline build, or null if it wasn't there
+   */
+  void compareWith(UriReportSummary baseline) {
+    if (baseline == null) {
+      return;
+    }
+    sizeDiff = size - baseline.size;
+    averageDiff = average - baseline.average;
+    medianDiff = median - baseline.median;
+    errorPercentDiff = errorPercent - baseline.errorPercent;
+    lastBuildHttpCode = baseline.httpCode;
+    LatencyHistogram histogram = getHistogram();
+    LatencyHistogram baselineHistogram = baseline.getHistogram();
+    if (histogram != null && baselineHistogram != null) {
+      comparison = LatencyComparison.compare(histogram, baselineHistogram);
+    }
+  }
+
+  public String getUri() {
+    return uri;
+  }
+
+  public String getShortUri() {
+    if (uri.length() > 130) {
+      return uri.substring(0, 129);
+    }
+    return uri;
+  }
+
+  public String getStaplerUri() {
+    return staplerUri;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int countErrors() {
+    return errors;
+  }
+
+  public double errorPercent() {
+    return errorPercent;
+  }
+
+  public long getAverage() {
+    return average;
+  }
+
+  public long getMedian() {
+    return median;
+  }
+
+  public long get90Line() {
+    return line90;
+  }
+
+  public long get95Line() {
+    return line95;
+  }
+
+  public long get99Line() {
+    return line99;
+  }
+
+  public long getMin() {
+    return min;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  public String getHttpCode() {
+    return httpCode;
+  }
+
+  public long getAverageBytesTransferred() {
+    return averageBytesTransferred;
+  }
+
+  /**
+   * @return the number of requests per second, 0 for summaries written by
+   *         older versions of the plugin
+   */
+  public double getThroughput() {
+    return throughput;
+  }
+
+  /**
+   * @return the distribution of the durations, or null if it wasn't recorded
+   */
+  public LatencyHistogram getHistogram() {
+    HistogramFile file = histogramFile;
+    if (file == null) {
+      return histogram;
+    }
+    return file.get(reportFileName, staplerUri);
+  }
+
+  /**
+   * Reads the distribution of the durations from the given file from now on.
+   */
+  void setHistogramFile(String reportFileName, HistogramFile histogramFile) {
+    this.reportFileName = reportFileName;
+    this.histogramFile = histogramFile;
+    this.histogram = null;
+  }
+
+  public boolean isFailed() {
+    return errors != 0;
+  }
+
+  public int getSizeDiff() {
+    return sizeDiff;
+  }
+
+  public long getAverageDiff() {
+    return averageDiff;
+  }
+
+  public long getMedianDiff() {
+    return medianDiff;
+  }
+
+  public double getErrorPercentDiff() {
+    return errorPercentDiff;
+  }
+
+  /**
+   * @return the test of the durations against the baseline build, or null
+   */
+  public LatencyComparison getComparison() {
+    return comparison;
+  }
+
+  public String getLastBuildHttpCodeIfChanged() {
+    if (lastBuildHttpCode == null || lastBuildHttpCode.equals(httpCode)) {
+      return "";
+    }
+    return lastBuildHttpCode;
+  }
+}
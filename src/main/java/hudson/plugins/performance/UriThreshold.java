@@ -0,0 +1,277 @@
+package hudson.plugins.performance;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.kohsuke.stapler.DataBoundConstructor;
+
+/**
+ * A limit on a metric of the URIs matching a pattern, such as "the 95th
+ * percentile of /checkout is below 800 ms". The build gets the configured
+ * result when any matching URI reaches the limit.
+ *
+ * This object is persisted with {@link PerformancePublisher} into the project
+ * configuration.
+ */
+public class UriThreshold {
+
+  /**
+   * Metrics of a {@link UriReportSummary} a threshold can apply to.
+   */
+  public enum Metric {
+    AVERAGE("average"), MEDIAN("median"), LINE90("90% line"), LINE95(
+        "95% line"), LINE99("99% line"), MAX("maximum"), ERROR_PERCENT(
+        "% of errors"), THROUGHPUT("throughput");
+
+    private final String label;
+
+    private Metric(String label) {
+      this.label = label;
+    }
+
+    /**
+     * @return whether the limit is a minimum rather than a maximum
+     */
+    public boolean isMinimum() {
+      return this == THROUGHPUT;
+    }
+
+    public String getLabel() {
+      return label;
+    }
+
+    double getValue(UriReportSummary uriSummary) {
+      switch (this) {
+      case AVERAGE:
+        return uriSummary.getAverage();
+      case MEDIAN:
+        return uriSummary.getMedian();
+      case LINE90:
+        return uriSummary.get90Line();
+      case LINE95:
+        return uriSummary.get95Line();
+      case LINE99:
+        return uriSummary.get99Line();
+      case MAX:
+        return uriSummary.getMax();
+      case THROUGHPUT:
+        return uriSummary.getThroughput();
+      default:
+        return uriSummary.errorPercent();
+      }
+    }
+
+    String getUnit() {
+      switch (this) {
+      case ERROR_PERCENT:
+        return "%";
+      case THROUGHPUT:
+        return " req/s";
+      default:
+        return " ms";
+      }
+    }
+  }
+
+  /**
+   * Outcome of a threshold for a build, stored with the build by
+   * {@link PerformanceBuildAction}.
+   */
+  public static class Outcome {
+
+    private final String description;
+
+    private final String result;
+
+    private final String unit;
+
+    private final boolean minimum;
+
+    /**
+     * Number of URIs the threshold applied to.
+     */
+    private int checked;
+
+    /**
+     * Number of URIs reaching the limit.
+     */
+    private int exceeded;
+
+    /**
+     * The matching URI with the value closest to the limit, or beyond it, null
+     * if none matched.
+     */
+    private String worstUri;
+
+    private double worstValue;
+
+    Outcome(UriThreshold threshold) {
+      this.description = threshold.getDescription();
+      this.result = threshold.getResult();
+      this.unit = threshold.getMetricValue().getUnit();
+      this.minimum = threshold.getMetricValue().isMinimum();
+    }
+
+    void check(String uri, double value, double limit) {
+      checked++;
+      if (minimum ? value <= limit : value >= limit) {
+        exceeded++;
+      }
+      if (worstUri == null || (minimum ? value < worstValue : value > worstValue)) {
+        worstUri = uri;
+        worstValue = value;
+      }
+    }
+
+    public String getDescription() {
+      return description;
+    }
+
+    /**
+     * @return the name of the result the build gets if the threshold failed
+     */
+    public String getResult() {
+      return result;
+    }
+
+    public boolean isPassed() {
+      return exceeded == 0;
+    }
+
+    public int getChecked() {
+      return checked;
+    }
+
+    public int getExceeded() {
+      return exceeded;
+    }
+
+    public String getWorstUri() {
+      return worstUri;
+    }
+
+    public double getWorstValue() {
+      return worstValue;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder text = new StringBuilder(description).append(": ");
+      if (checked == 0) {
+        return text.append("no URI matched").toString();
+      }
+      text.append(isPassed() ? "passed" : "failed on " + exceeded + " of "
+          + checked + " URIs");
+      text.append(", worst is ").append(worstUri).append(" with ");
+      text.append(Math.round(worstValue)).append(unit);
+      return text.toString();
+    }
+  }
+
+  /**
+   * Regular expression the whole URI has to match.
+   */
+  private final String pattern;
+
+  private final String metric;
+
+  private final double limit;
+
+  /**
+   * Name of the result the build gets when the threshold fails, either
+   * UNSTABLE or FAILURE.
+   */
+  private final String result;
+
+  private transient Pattern compiledPattern;
+
+  @DataBoundConstructor
+  public UriThreshold(String pattern, String metric, double limit,
+      String result) {
+    this.pattern = (pattern == null || pattern.length() == 0) ? ".*"
+        : pattern;
+    this.metric = metric;
+    this.limit = limit;
+    this.result = "FAILURE".equals(result) ? "FAILURE" : "UNSTABLE";
+  }
+
+  public String getPattern() {
+    return pattern;
+  }
+
+  public String getMetric() {
+    return getMetricValue().name();
+  }
+
+  public double getLimit() {
+    return limit;
+  }
+
+  public String getResult() {
+    return result;
+  }
+
+  Metric getMetricValue() {
+    try {
+      return Metric.valueOf(metric);
+    } catch (RuntimeException e) {
+      return Metric.AVERAGE;
+    }
+  }
+
+  public String getDescription() {
+    Metric value = getMetricValue();
+    String limitText = limit == Math.rint(limit) ? Long.toString((long) limit)
+        : Double.toString(limit);
+    return value.getLabel() + " of " + pattern
+        + (value.isMinimum() ? " > " : " < ") + limitText + value.getUnit();
+  }
+
+  /**
+   * @return why a pattern isn't a valid regular expression, null if it is
+   */
+  static String checkPattern(String pattern) {
+    try {
+      Pattern.compile(pattern);
+      return null;
+    } catch (PatternSyntaxException e) {
+      return e.getDescription();
+    }
+  }
+
+  boolean matches(String uri) {
+    if (compiledPattern == null) {
+      compiledPattern = Pattern.compile(pattern);
+    }
+    return compiledPattern.matcher(uri).matches();
+  }
+
+  /**
+   * Evaluates thresholds against the URIs of reports, in one pass over the
+   * URIs.
+   *
+   * @return the outcomes, in the order of the thresholds
+   */
+  public static List<Outcome> evaluate(List<UriThreshold> thresholds,
+      Collection<UriReportSummary> uriSummaries) {
+    List<Outcome> outcomes = new ArrayList<Outcome>(thresholds.size());
+    Metric[] metrics = new Metric[thresholds.size()];
+    for (int i = 0; i < thresholds.size(); i++) {
+      outcomes.add(new Outcome(thresholds.get(i)));
+      metrics[i] = thresholds.get(i).getMetricValue();
+    }
+    for (UriReportSummary uriSummary : uriSummaries) {
+      for (int i = 0; i < metrics.length; i++) {
+        UriThreshold threshold = thresholds.get(i);
+        if (threshold.matches(uriSummary.getUri())) {
+          outcomes.get(i).check(uriSummary.getUri(),
+              metrics[i].getValue(uriSummary), threshold.limit);
+        }
+      }
+    }
+    return outcomes;
+  }
+}
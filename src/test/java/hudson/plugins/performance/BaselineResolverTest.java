@@ -0,0 +1,91 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Result;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.easymock.classextension.EasyMock;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("unchecked")
+public class BaselineResolverTest {
+
+	private AbstractProject project;
+
+	/**
+	 * Builds of the project by number: #1 succeeded, #2 succeeded without
+	 * performance reports, #3 failed and #4 is the build being compared.
+	 */
+	private AbstractBuild[] builds = new AbstractBuild[5];
+
+	private Map<String, PerformanceReportSummary> summaries = Collections.singletonMap(
+			"a.jtl", null);
+
+	@Before
+	public void setUp() {
+		project = EasyMock.createMock(AbstractProject.class);
+		for (int number = 1; number < builds.length; number++) {
+			builds[number] = EasyMock.createMock(AbstractBuild.class);
+		}
+		Result[] results = { null, Result.SUCCESS, Result.SUCCESS,
+				Result.FAILURE, null };
+		for (int number = 1; number < builds.length; number++) {
+			AbstractBuild build = builds[number];
+			PerformanceBuildAction buildAction = null;
+			if (number != 2) {
+				buildAction = EasyMock.createMock(PerformanceBuildAction.class);
+				EasyMock.expect(buildAction.getSummaries()).andStubReturn(
+						summaries);
+				EasyMock.replay(buildAction);
+			}
+			EasyMock.expect(build.getAction(PerformanceBuildAction.class))
+					.andStubReturn(buildAction);
+			EasyMock.expect(build.getPreviousBuild()).andStubReturn(
+					builds[number - 1]);
+			EasyMock.expect(build.getResult()).andStubReturn(results[number]);
+			EasyMock.expect(build.getProject()).andStubReturn(project);
+			EasyMock.expect(project.getBuildByNumber(number)).andStubReturn(build);
+		}
+		EasyMock.expect(project.getBuildByNumber(9)).andStubReturn(null);
+		EasyMock.replay(project);
+		EasyMock.replay((Object[]) builds);
+	}
+
+	@Test
+	public void testPreviousBuild() {
+		assertSame(builds[3], new BaselineResolver(builds[4]).getBaselineBuild());
+		// #2 has no performance reports
+		assertSame(builds[1], new BaselineResolver(builds[3]).getBaselineBuild());
+		assertNull(new BaselineResolver(builds[1]).getBaselineBuild());
+	}
+
+	@Test
+	public void testSuccessfulOnly() {
+		assertSame(builds[1],
+				new BaselineResolver(builds[4], 0, true).getBaselineBuild());
+	}
+
+	@Test
+	public void testPinnedBuild() {
+		assertSame(builds[1], new BaselineResolver(builds[4], 1).getBaselineBuild());
+		// failed, but chosen explicitly
+		assertSame(builds[3],
+				new BaselineResolver(builds[4], 3, true).getBaselineBuild());
+		// without performance reports, the build itself, or deleted
+		assertNull(new BaselineResolver(builds[4], 2).getBaselineBuild());
+		assertNull(new BaselineResolver(builds[4], 4).getBaselineBuild());
+		assertNull(new BaselineResolver(builds[4], 9).getBaselineBuild());
+	}
+
+	@Test
+	public void testSummaries() {
+		assertSame(summaries, new BaselineResolver(builds[4]).getSummaries());
+		assertTrue(new BaselineResolver(builds[1]).getSummaries().isEmpty());
+	}
+}
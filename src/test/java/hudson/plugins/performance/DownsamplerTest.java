@@ -0,0 +1,40 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class DownsamplerTest {
+
+	@Test
+	public void testKeepsAllValuesUnderThreshold() {
+		double[] values = { 1, 2, 3 };
+		int[] selected = Downsampler.largestTriangleThreeBuckets(values, 10);
+		assertEquals(3, selected.length);
+		assertEquals(0, selected[0]);
+		assertEquals(2, selected[2]);
+	}
+
+	@Test
+	public void testKeepsEndsAndSpike() {
+		double[] values = new double[1000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = 100;
+		}
+		values[617] = 5000;
+
+		int[] selected = Downsampler.largestTriangleThreeBuckets(values, 50);
+
+		assertEquals(50, selected.length);
+		assertEquals(0, selected[0]);
+		assertEquals(999, selected[49]);
+		boolean spikeKept = false;
+		for (int i = 0; i < selected.length; i++) {
+			if (i > 0) {
+				assertTrue(selected[i] > selected[i - 1]);
+			}
+			spikeKept |= selected[i] == 617;
+		}
+		assertTrue(spikeKept);
+	}
+}
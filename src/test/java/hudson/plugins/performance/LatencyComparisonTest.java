@@ -0,0 +1,60 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LatencyComparisonTest {
+
+	private LatencyHistogram createHistogram(long seed, int size, long mean) {
+		Random random = new Random(seed);
+		long[] durations = new long[size];
+		for (int i = 0; i < size; i++) {
+			durations[i] = Math.max(0, Math.round(mean + random.nextGaussian() * mean / 5));
+		}
+		return new LatencyHistogram(durations);
+	}
+
+	@Test
+	public void testErfc() {
+		assertEquals(1.0, LatencyComparison.erfc(0), 1e-6);
+		assertEquals(0.0455003, LatencyComparison.erfc(2 / Math.sqrt(2)), 1e-6);
+		assertEquals(1.9544997, LatencyComparison.erfc(-2 / Math.sqrt(2)), 1e-6);
+	}
+
+	@Test
+	public void testSameDistribution() {
+		LatencyComparison comparison = LatencyComparison.compare(
+				createHistogram(1, 5000, 200), createHistogram(2, 5000, 200));
+
+		assertFalse(comparison.isSignificant());
+		assertEquals(0, comparison.getEffectSize(), 0.05);
+	}
+
+	@Test
+	public void testRegression() {
+		LatencyComparison comparison = LatencyComparison.compare(
+				createHistogram(1, 5000, 300), createHistogram(2, 5000, 200));
+
+		assertTrue(comparison.isSignificantRegression());
+		assertFalse(comparison.isSignificantImprovement());
+		assertTrue(comparison.getPValue() < 1e-6);
+		assertTrue(comparison.getEffectSize() > 0.5);
+	}
+
+	@Test
+	public void testImprovement() {
+		LatencyComparison comparison = LatencyComparison.compare(
+				createHistogram(1, 500, 150), createHistogram(2, 500, 200));
+
+		assertTrue(comparison.isSignificantImprovement());
+	}
+
+	@Test
+	public void testEmpty() {
+		assertNull(LatencyComparison.compare(new LatencyHistogram(new long[0]),
+				createHistogram(1, 10, 100)));
+	}
+}
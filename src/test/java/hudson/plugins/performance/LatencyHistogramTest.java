@@ -0,0 +1,42 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+	@Test
+	public void testBuckets() {
+		for (long duration = 0; duration < 100000; duration++) {
+			int bucket = LatencyHistogram.bucketOf(duration);
+			assertTrue(LatencyHistogram.lowerBound(bucket) <= duration);
+			assertTrue(LatencyHistogram.upperBound(bucket) >= duration);
+		}
+		assertEquals(15, LatencyHistogram.bucketOf(15));
+		assertEquals(LatencyHistogram.bucketOf(1000), LatencyHistogram.bucketOf(1015));
+	}
+
+	@Test
+	public void testGetValueAtPercentile() {
+		long[] durations = new long[1000];
+		for (int i = 0; i < durations.length; i++) {
+			durations[i] = i + 1;
+		}
+		LatencyHistogram histogram = new LatencyHistogram(durations);
+
+		assertEquals(1000, histogram.getCount());
+		long line90 = histogram.getValueAtPercentile(90);
+		assertTrue(line90 >= 901 && line90 <= 901 * 1.07);
+		assertEquals(0, new LatencyHistogram(new long[0]).getValueAtPercentile(90));
+	}
+
+	@Test
+	public void testCountAbove() {
+		LatencyHistogram histogram = new LatencyHistogram(new long[] { 10, 20,
+				500, 600, 5000 });
+
+		assertEquals(3, histogram.countAbove(100));
+		assertEquals(0, histogram.countAbove(5000));
+	}
+}
@@ -0,0 +1,34 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ParseSchedulerTest {
+
+	@Test
+	public void testReservation() throws Exception {
+		File report = File.createTempFile("report", ".jtl");
+		report.deleteOnExit();
+		FileOutputStream out = new FileOutputStream(report);
+		try {
+			out.write(new byte[3 * 1024 * 1024]);
+		} finally {
+			out.close();
+		}
+		List<File> reports = new ArrayList<File>(Arrays.asList(report));
+
+		assertEquals(7, ParseScheduler.getReservation(reports, 100));
+		// never more than all parses may reserve
+		assertEquals(5, ParseScheduler.getReservation(reports, 5));
+
+		reports.add(new File("src/test/resources/JMeterResults.jtl"));
+		assertEquals(7, ParseScheduler.getReservation(reports, 100));
+	}
+}
@@ -0,0 +1,49 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class PerformanceDiagnosticsTest {
+
+	@Test
+	public void testRecentPercentiles() {
+		PerformanceDiagnostics.Operation operation = new PerformanceDiagnostics.Operation(
+				"Parse", 10);
+		assertEquals(0, operation.getRecentMedian(), 0.001);
+
+		// only the latest 10 of 1 to 20 ms are kept
+		for (int i = 1; i <= 20; i++) {
+			operation.add(i * 1000000L, 100, 1024 * 1024);
+		}
+		assertEquals(20, operation.getCount());
+		assertEquals(210, operation.getTotal());
+		assertEquals(15, operation.getRecentMedian(), 0.001);
+		assertEquals(20, operation.getRecentLine99(), 0.001);
+		assertEquals(2000 * 1000 / 210.0, operation.getSamplesPerSecond(), 0.01);
+		assertEquals(20 * 1000 / 210.0, operation.getMegabytesPerSecond(), 0.01);
+	}
+
+	@Test
+	public void testCache() {
+		PerformanceDiagnostics.Cache cache = new PerformanceDiagnostics.Cache(
+				"Trends");
+		assertEquals(0, cache.getHitPercent(), 0.001);
+		cache.add(true);
+		cache.add(true);
+		cache.add(true);
+		cache.add(false);
+		assertEquals(75, cache.getHitPercent(), 0.001);
+	}
+
+	@Test
+	public void testTimings() {
+		PerformanceDiagnostics.Timings timings = new PerformanceDiagnostics.Timings();
+		timings.add("locate", 3000000, 0, 0);
+		timings.add("parse", 500000000, 1000, 0);
+		timings.add("parse", 500000000, 1000, 2 * 1024 * 1024);
+
+		assertEquals("locate 3 ms, parse 1000 ms (2000 samples, 2000 samples/s, 2.0 MB/s)",
+				timings.toString());
+	}
+}
@@ -0,0 +1,178 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import hudson.model.AbstractBuild;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import org.easymock.classextension.EasyMock;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PerformanceProjectActionTest {
+
+	private PerformanceProjectAction projectAction;
+
+	/**
+	 * Builds #1 to #5, newest first, #n started at noon on the nth of January
+	 * 2011 but #2, started at midnight.
+	 */
+	private List<AbstractBuild<?, ?>> builds;
+
+	private AbstractBuild<?, ?> createBuild(int number, long time) {
+		AbstractBuild<?, ?> build = EasyMock.createNiceMock(AbstractBuild.class);
+		build.number = number;
+		EasyMock.expect(build.getTimeInMillis()).andStubReturn(time);
+		EasyMock.replay(build);
+		return build;
+	}
+
+	private GraphConfigurationDetail createGraphConf(String configType,
+			int buildCount, int buildStep, String firstDayCount,
+			String lastDayCount) {
+		GraphConfigurationDetail graphConf = EasyMock
+				.createNiceMock(GraphConfigurationDetail.class);
+		EasyMock.expect(graphConf.getConfigType()).andStubReturn(configType);
+		EasyMock.expect(graphConf.isNone()).andStubReturn(
+				GraphConfigurationDetail.NONE_CONFIG.equals(configType));
+		EasyMock.expect(graphConf.isBuildCount()).andStubReturn(
+				GraphConfigurationDetail.BUILD_CONFIG.equals(configType));
+		EasyMock.expect(graphConf.isBuildNth()).andStubReturn(
+				GraphConfigurationDetail.BUILDNTH_CONFIG.equals(configType));
+		EasyMock.expect(graphConf.isDate()).andStubReturn(
+				GraphConfigurationDetail.DATE_CONFIG.equals(configType));
+		EasyMock.expect(graphConf.isDefaultDates()).andStubReturn(
+				GraphConfigurationDetail.DEFAULT_DATE.equals(firstDayCount)
+						&& GraphConfigurationDetail.DEFAULT_DATE.equals(lastDayCount));
+		EasyMock.expect(graphConf.getBuildCount()).andStubReturn(buildCount);
+		EasyMock.expect(graphConf.getBuildStep()).andStubReturn(buildStep);
+		EasyMock.expect(graphConf.getFirstDayCount()).andStubReturn(firstDayCount);
+		EasyMock.expect(graphConf.getLastDayCount()).andStubReturn(lastDayCount);
+		EasyMock.replay(graphConf);
+		return graphConf;
+	}
+
+	@Before
+	public void setUp() {
+		projectAction = new PerformanceProjectAction(null);
+		builds = new ArrayList<AbstractBuild<?, ?>>();
+		for (int number = 5; number >= 1; number--) {
+			GregorianCalendar start = new GregorianCalendar(2011,
+					GregorianCalendar.JANUARY, number, number == 2 ? 0 : 12, 0);
+			builds.add(createBuild(number, start.getTimeInMillis()));
+		}
+	}
+
+	/**
+	 * @return the numbers of the builds of the range, newest first
+	 */
+	private List<Integer> getBuildNumbers(PerformanceProjectAction.Range range,
+			List<AbstractBuild<?, ?>> builds) {
+		List<Integer> numbers = new ArrayList<Integer>();
+		for (AbstractBuild<?, ?> build : range.getBuilds(builds)) {
+			numbers.add(build.number);
+		}
+		return numbers;
+	}
+
+	private List<Integer> getBuildNumbers(GraphConfigurationDetail graphConf) {
+		return getBuildNumbers(projectAction.getFirstAndLastBuild(graphConf,
+				builds), builds);
+	}
+
+	private static List<Integer> numbers(Integer... numbers) {
+		List<Integer> list = new ArrayList<Integer>();
+		Collections.addAll(list, numbers);
+		return list;
+	}
+
+	@Test
+	public void testRangeGetBuilds() {
+		assertEquals(numbers(5, 4, 3, 2, 1), getBuildNumbers(
+				new PerformanceProjectAction.Range(1, 5), builds));
+		assertEquals(numbers(4, 3), getBuildNumbers(
+				new PerformanceProjectAction.Range(3, 4), builds));
+		// past the end of the list
+		assertEquals(numbers(5, 4, 3), getBuildNumbers(
+				new PerformanceProjectAction.Range(3, 10), builds));
+		assertEquals(numbers(5, 4, 3, 2, 1), getBuildNumbers(
+				new PerformanceProjectAction.Range(-1, 10), builds));
+		// no build found for a bound
+		assertEquals(numbers(), getBuildNumbers(
+				new PerformanceProjectAction.Range(-1, -1), builds));
+		assertEquals(numbers(), getBuildNumbers(
+				new PerformanceProjectAction.Range(3, -1), builds));
+		assertEquals(numbers(), getBuildNumbers(
+				new PerformanceProjectAction.Range(4, 3), builds));
+		// steps by build number
+		assertEquals(numbers(4, 2), getBuildNumbers(
+				new PerformanceProjectAction.Range(1, 5, 2), builds));
+		assertEquals(numbers(3), getBuildNumbers(
+				new PerformanceProjectAction.Range(1, 4, 3), builds));
+		assertEquals(numbers(), getBuildNumbers(
+				new PerformanceProjectAction.Range(1, 5),
+				new ArrayList<AbstractBuild<?, ?>>()));
+	}
+
+	@Test
+	public void testDefault() {
+		assertEquals(numbers(5, 4, 3, 2, 1), getBuildNumbers(createGraphConf(
+				GraphConfigurationDetail.NONE_CONFIG, 0, 0, null, null)));
+	}
+
+	@Test
+	public void testBuildCount() {
+		assertEquals(numbers(5, 4), getBuildNumbers(createGraphConf(
+				GraphConfigurationDetail.BUILD_CONFIG, 2, 0, null, null)));
+		assertEquals(numbers(5, 4, 3, 2, 1), getBuildNumbers(createGraphConf(
+				GraphConfigurationDetail.BUILD_CONFIG, 10, 0, null, null)));
+		assertEquals(numbers(5, 4, 3, 2, 1), getBuildNumbers(createGraphConf(
+				GraphConfigurationDetail.BUILD_CONFIG, 0, 0, null, null)));
+		builds.clear();
+		assertEquals(numbers(), getBuildNumbers(createGraphConf(
+				GraphConfigurationDetail.BUILD_CONFIG, 2, 0, null, null)));
+	}
+
+	@Test
+	public void testBuildNth() {
+		assertEquals(numbers(4, 2), getBuildNumbers(createGraphConf(
+				GraphConfigurationDetail.BUILDNTH_CONFIG, 0, 2, null, null)));
+		assertEquals(numbers(5, 4, 3, 2, 1), getBuildNumbers(createGraphConf(
+				GraphConfigurationDetail.BUILDNTH_CONFIG, 0, 0, null, null)));
+	}
+
+	@Test
+	public void testDate() {
+		assertEquals(numbers(4, 3, 2, 1), getBuildNumbers(createGraphConf(
+				GraphConfigurationDetail.DATE_CONFIG, 0, 0, "01/01/2011",
+				"04/01/2011")));
+		// #2 started when the first day starts, not after it
+		assertEquals(numbers(4, 3), getBuildNumbers(createGraphConf(
+				GraphConfigurationDetail.DATE_CONFIG, 0, 0, "02/01/2011",
+				"04/01/2011")));
+		assertEquals(numbers(5), getBuildNumbers(createGraphConf(
+				GraphConfigurationDetail.DATE_CONFIG, 0, 0, "05/01/2011",
+				"05/01/2011")));
+		assertEquals(numbers(5, 4, 3, 2, 1), getBuildNumbers(createGraphConf(
+				GraphConfigurationDetail.DATE_CONFIG, 0, 0,
+				GraphConfigurationDetail.DEFAULT_DATE,
+				GraphConfigurationDetail.DEFAULT_DATE)));
+		// as with the scan of the builds this replaced, no build after the
+		// first day leaves the range unbounded below, while no build before
+		// the last day leaves it empty
+		assertEquals(numbers(5, 4, 3, 2, 1), getBuildNumbers(createGraphConf(
+				GraphConfigurationDetail.DATE_CONFIG, 0, 0, "06/01/2011",
+				"31/01/2011")));
+		assertEquals(numbers(), getBuildNumbers(createGraphConf(
+				GraphConfigurationDetail.DATE_CONFIG, 0, 0, "01/12/2010",
+				"31/12/2010")));
+		builds.clear();
+		assertEquals(numbers(), getBuildNumbers(createGraphConf(
+				GraphConfigurationDetail.DATE_CONFIG, 0, 0, "01/01/2011",
+				"04/01/2011")));
+	}
+}
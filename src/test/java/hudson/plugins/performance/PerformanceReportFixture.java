@@ -0,0 +1,53 @@
+package hudson.plugins.performance;
+
+import java.util.Date;
+
+/**
+ * Reports for the tests of the gates, which compare summaries of reports that
+ * don't belong to any build.
+ */
+class PerformanceReportFixture {
+
+	/**
+	 * Start time of the samples.
+	 */
+	static final long START = 1000000;
+
+	private PerformanceReportFixture() {
+	}
+
+	/**
+	 * @return a report without a build action, whose samples all succeed
+	 */
+	static PerformanceReport createReport(String reportFileName) {
+		PerformanceReport report = new PerformanceReport() {
+			@Override
+			public int countErrors() {
+				return 0;
+			}
+
+			@Override
+			public double errorPercent() {
+				return 0;
+			}
+		};
+		report.setReportFileName(reportFileName);
+		return report;
+	}
+
+	/**
+	 * Adds samples of a URI taking the same time, one every given number of
+	 * milliseconds from {@link #START}.
+	 */
+	static void addSamples(PerformanceReport report, String uri, int count,
+			long duration, int interval) throws Exception {
+		for (int i = 0; i < count; i++) {
+			HttpSample httpSample = new HttpSample();
+			httpSample.setUri(uri);
+			httpSample.setDuration(duration);
+			httpSample.setDate(new Date(START + i * interval));
+			httpSample.setSuccessful(true);
+			report.addSample(httpSample);
+		}
+	}
+}
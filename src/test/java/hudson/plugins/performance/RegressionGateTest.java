@@ -0,0 +1,64 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class RegressionGateTest {
+
+	/**
+	 * Adds a report whose URIs took the given durations, every sample of a
+	 * URI taking the same time.
+	 */
+	private void addSummary(Map<String, PerformanceReportSummary> summaries,
+			String reportFileName, Object... urisAndDurations) throws Exception {
+		PerformanceReport report = PerformanceReportFixture
+				.createReport(reportFileName);
+		for (int i = 0; i < urisAndDurations.length; i += 2) {
+			PerformanceReportFixture.addSamples(report,
+					(String) urisAndDurations[i], 10,
+					(Integer) urisAndDurations[i + 1], 100);
+		}
+		summaries.put(reportFileName, new PerformanceReportSummary(report));
+	}
+
+	@Test
+	public void testCompare() throws Exception {
+		Map<String, PerformanceReportSummary> summaries = new LinkedHashMap<String, PerformanceReportSummary>();
+		addSummary(summaries, "a.jtl", "/same", 100, "/slow", 300, "/slower",
+				500, "/new", 900, "/zero", 100);
+		addSummary(summaries, "b.jtl", "/slow", 900);
+		Map<String, PerformanceReportSummary> baseline = new LinkedHashMap<String, PerformanceReportSummary>();
+		addSummary(baseline, "a.jtl", "/same", 100, "/slow", 100, "/slower",
+				100, "/zero", 0);
+
+		List<RegressionGate.Regression> regressions = new RegressionGate(50)
+				.compare(summaries, baseline);
+
+		// /new and all of b.jtl have no baseline, /zero has a zero baseline
+		assertEquals(2, regressions.size());
+		assertEquals("/slower", regressions.get(0).getUri());
+		assertEquals(400, regressions.get(0).getIncrease(), 0.001);
+		assertEquals(100, regressions.get(0).getSlowerPercent(), 0.001);
+		assertEquals("/slow", regressions.get(1).getUri());
+		assertEquals("a.jtl", regressions.get(1).getReportFileName());
+		assertEquals(100, regressions.get(1).getBaselineLine90());
+		assertEquals(300, regressions.get(1).get90Line());
+		assertEquals(200, regressions.get(1).getIncrease(), 0.001);
+	}
+
+	@Test
+	public void testTolerance() throws Exception {
+		Map<String, PerformanceReportSummary> summaries = new LinkedHashMap<String, PerformanceReportSummary>();
+		addSummary(summaries, "a.jtl", "/slow", 150);
+		Map<String, PerformanceReportSummary> baseline = new LinkedHashMap<String, PerformanceReportSummary>();
+		addSummary(baseline, "a.jtl", "/slow", 100);
+
+		assertTrue(new RegressionGate(50).compare(summaries, baseline).isEmpty());
+		assertEquals(1, new RegressionGate(49).compare(summaries, baseline).size());
+	}
+}
@@ -0,0 +1,58 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class SampleBudgetTest {
+
+	private static final long MAX_SAMPLES = 2 * SampleBudget.BLOCK;
+
+	@Test
+	public void testOwnBudget() {
+		assertTrue(SampleBudget.reserve(0, MAX_SAMPLES));
+		assertTrue(SampleBudget.reserve(SampleBudget.BLOCK, MAX_SAMPLES));
+		assertFalse(SampleBudget.reserve(MAX_SAMPLES, MAX_SAMPLES));
+		assertTrue(SampleBudget.reserve(MAX_SAMPLES, Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testSharedBudget() throws Exception {
+		final CountDownLatch reserved = new CountDownLatch(1);
+		final CountDownLatch checked = new CountDownLatch(1);
+		final boolean[] allowed = new boolean[2];
+		// another parse takes the whole budget, then ends
+		Thread other = new Thread() {
+			public void run() {
+				SampleBudget.begin();
+				try {
+					allowed[0] = SampleBudget.reserve(0, MAX_SAMPLES);
+					allowed[1] = SampleBudget.reserve(SampleBudget.BLOCK,
+							MAX_SAMPLES);
+					reserved.countDown();
+					checked.await();
+				} catch (InterruptedException e) {
+					// end the parse
+				} finally {
+					SampleBudget.end();
+				}
+			}
+		};
+		other.start();
+		reserved.await();
+		assertTrue(allowed[0]);
+		assertTrue(allowed[1]);
+
+		SampleBudget.begin();
+		try {
+			assertFalse(SampleBudget.reserve(0, MAX_SAMPLES));
+			checked.countDown();
+			other.join();
+			assertTrue(SampleBudget.reserve(0, MAX_SAMPLES));
+		} finally {
+			SampleBudget.end();
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SlidingWindowLatencyTest {
+
+	private List<HttpSample> createSamples() {
+		// 10 samples per second for 60 seconds, slow and failing from 30s to 32s
+		List<HttpSample> samples = new ArrayList<HttpSample>();
+		for (int second = 0; second < 60; second++) {
+			boolean storm = second >= 30 && second < 33;
+			for (int i = 0; i < 10; i++) {
+				HttpSample httpSample = new HttpSample();
+				httpSample.setDate(new Date(1000000 + second * 1000 + i * 100));
+				httpSample.setDuration(storm ? 5000 : 100);
+				httpSample.setSuccessful(!storm || i > 4);
+				samples.add(httpSample);
+			}
+		}
+		return samples;
+	}
+
+	@Test
+	public void testWorstWindows() {
+		SlidingWindowLatency windows = new SlidingWindowLatency(createSamples(), 10);
+
+		assertEquals(10, windows.getWindowSeconds());
+		assertEquals(51, windows.getLine99Series().length);
+		assertEquals(100, windows.getLine99Series()[0], 100 * 0.07);
+		int worst = windows.getWorstLine99Window();
+		assertEquals(21, worst);
+		assertEquals(5000, windows.getLine99Series()[worst], 5000 * 0.07);
+		assertEquals(1021000, windows.getWindowStart(worst));
+
+		worst = windows.getWorstErrorPercentWindow();
+		assertEquals(15.0, windows.getErrorPercentSeries()[worst], 0.001);
+		assertEquals(0.0, windows.getErrorPercentSeries()[0], 0.001);
+	}
+
+	@Test
+	public void testShortRun() {
+		SlidingWindowLatency windows = new SlidingWindowLatency(createSamples(), 600);
+
+		assertEquals(60, windows.getWindowSeconds());
+		assertEquals(1, windows.getLine99Series().length);
+		assertEquals(2.5, windows.getErrorPercentSeries()[0], 0.001);
+	}
+
+	@Test
+	public void testNoSamples() {
+		SlidingWindowLatency windows = new SlidingWindowLatency(
+				new ArrayList<HttpSample>(), 10);
+
+		assertEquals(-1, windows.getWorstLine99Window());
+	}
+
+	@Test
+	public void testOutliers() {
+		List<HttpSample> samples = createSamples();
+		// a sample a year later and one far in the future
+		for (long time : new long[] { 365L * 24 * 3600 * 1000, Long.MAX_VALUE }) {
+			HttpSample httpSample = new HttpSample();
+			httpSample.setDate(new Date(time));
+			httpSample.setDuration(100000);
+			samples.add(httpSample);
+		}
+		SlidingWindowLatency windows = new SlidingWindowLatency(samples, 10);
+
+		assertEquals(2, windows.getOutliers());
+		assertEquals(51, windows.getLine99Series().length);
+		assertEquals(5000, windows.getLine99Series()[21], 5000 * 0.07);
+	}
+
+	@Test
+	public void testLeadingOutlier() {
+		List<HttpSample> samples = createSamples();
+		// the first sample started a year later, with a bogus duration
+		HttpSample httpSample = new HttpSample();
+		httpSample.setDate(new Date(365L * 24 * 3600 * 1000));
+		httpSample.setDuration(100000);
+		samples.add(0, httpSample);
+		SlidingWindowLatency windows = new SlidingWindowLatency(samples, 10);
+
+		assertEquals(1, windows.getOutliers());
+		assertEquals(51, windows.getLine99Series().length);
+		assertEquals(21, windows.getWorstLine99Window());
+		assertEquals(5000, windows.getLine99Series()[21], 5000 * 0.07);
+	}
+
+	@Test
+	public void testAggregate() {
+		List<HttpSample> samples = createSamples();
+		SampleAggregate aggregate = new SampleAggregate();
+		for (HttpSample httpSample : samples) {
+			aggregate.add(httpSample);
+		}
+		SlidingWindowLatency kept = new SlidingWindowLatency(samples, 10);
+		SlidingWindowLatency windows = new SlidingWindowLatency(aggregate, 10);
+
+		assertEquals(51, windows.getLine99Series().length);
+		assertEquals(kept.getWorstLine99Window(), windows.getWorstLine99Window());
+		for (int i = 0; i < 51; i++) {
+			assertEquals(kept.getLine99Series()[i], windows.getLine99Series()[i]);
+			assertEquals(kept.getErrorPercentSeries()[i],
+					windows.getErrorPercentSeries()[i], 0.001);
+		}
+		assertEquals(kept.getWindowStart(0), windows.getWindowStart(0));
+	}
+}
@@ -0,0 +1,106 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+public class ThroughputCounterTest {
+
+	private void add(ThroughputCounter counter, long time) {
+		HttpSample httpSample = new HttpSample();
+		httpSample.setDate(new Date(time));
+		httpSample.setDuration(50);
+		counter.add(httpSample);
+	}
+
+	@Test
+	public void testRate() {
+		ThroughputCounter counter = new ThroughputCounter();
+		assertEquals(0, counter.getRate(), 0.001);
+
+		add(counter, 1000);
+		assertEquals(20, counter.getRate(), 0.001);
+
+		for (int i = 1; i <= 10; i++) {
+			add(counter, 1000 + i * 100);
+		}
+		assertEquals(11, counter.getCount());
+		assertEquals(10, counter.getRate(), 0.001);
+	}
+
+	@Test
+	public void testWorstRate() {
+		ThroughputCounter counter = new ThroughputCounter();
+		// 10 requests per second for 20 seconds, but none from 8s to 12s,
+		// added out of order
+		for (int second = 19; second >= 0; second--) {
+			if (second < 8 || second >= 12) {
+				for (int i = 0; i < 10; i++) {
+					add(counter, 100000 + second * 1000 + i * 100);
+				}
+			}
+		}
+
+		assertEquals(0, counter.getWorstRate(4), 0.001);
+		assertEquals(5, counter.getWorstRate(8), 0.001);
+		assertEquals(counter.getRate(), counter.getWorstRate(60), 0.001);
+	}
+
+	@Test
+	public void testAddCounter() {
+		ThroughputCounter counter = new ThroughputCounter();
+		ThroughputCounter other = new ThroughputCounter();
+		for (int second = 0; second < 10; second++) {
+			add(second < 5 ? other : counter, 100000 + second * 1000);
+			add(second < 5 ? other : counter, 100500 + second * 1000);
+		}
+
+		counter.add(other);
+
+		assertEquals(20, counter.getCount());
+		assertEquals(19 / 9.5, counter.getRate(), 0.001);
+		assertEquals(2, counter.getWorstRate(3), 0.001);
+	}
+
+	@Test
+	public void testOutliers() {
+		ThroughputCounter counter = new ThroughputCounter();
+		long start = 1300000000000L;
+		for (int i = 0; i <= 10; i++) {
+			add(counter, start + i * 100);
+		}
+		// a sample of 1970 and one far in the future
+		add(counter, 0);
+		add(counter, Long.MAX_VALUE / 2);
+
+		assertEquals(11, counter.getCount());
+		assertEquals(2, counter.getOutliers());
+		assertEquals(10, counter.getRate(), 0.001);
+		assertEquals(1, counter.getWorstRate(1), 0.001);
+
+		ThroughputCounter other = new ThroughputCounter();
+		add(other, 0);
+		add(other, 100);
+		counter.add(other);
+		assertEquals(11, counter.getCount());
+		assertEquals(4, counter.getOutliers());
+	}
+
+	@Test
+	public void testLeadingOutlier() {
+		ThroughputCounter counter = new ThroughputCounter();
+		// the first sample has a bogus time, the others are 10 per second
+		add(counter, 0);
+		long start = 1300000000000L;
+		for (int i = 0; i < 20; i++) {
+			add(counter, start + i * 100);
+		}
+
+		assertEquals(20, counter.getCount());
+		assertEquals(1, counter.getOutliers());
+		assertEquals(10, counter.getRate(), 0.001);
+		assertEquals(10, counter.getWorstRate(1), 0.001);
+	}
+}
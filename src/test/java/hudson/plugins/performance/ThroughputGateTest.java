@@ -0,0 +1,74 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ThroughputGateTest {
+
+	/**
+	 * Adds a report whose URIs got the given number of samples, one every
+	 * given number of milliseconds, all starting at the same time.
+	 */
+	private void addSummary(Map<String, PerformanceReportSummary> summaries,
+			String reportFileName, Object... urisCountsAndIntervals)
+			throws Exception {
+		PerformanceReport report = PerformanceReportFixture
+				.createReport(reportFileName);
+		for (int i = 0; i < urisCountsAndIntervals.length; i += 3) {
+			PerformanceReportFixture.addSamples(report,
+					(String) urisCountsAndIntervals[i],
+					(Integer) urisCountsAndIntervals[i + 1], 0,
+					(Integer) urisCountsAndIntervals[i + 2]);
+		}
+		summaries.put(reportFileName, new PerformanceReportSummary(report));
+	}
+
+	@Test
+	public void testCompare() throws Exception {
+		// the run lasts 4.5 seconds in both builds, so the throughput of the
+		// whole report doesn't drop
+		Map<String, PerformanceReportSummary> summaries = new LinkedHashMap<String, PerformanceReportSummary>();
+		addSummary(summaries, "a.jtl", "/steady", 10, 500, "/dropping", 10,
+				200, "/halting", 10, 500, "/zero", 10, 100, "/new", 10, 500);
+		addSummary(summaries, "b.jtl", "/steady", 10, 500);
+		Map<String, PerformanceReportSummary> baseline = new LinkedHashMap<String, PerformanceReportSummary>();
+		// a single sample taking no time has no throughput
+		addSummary(baseline, "a.jtl", "/steady", 10, 500, "/dropping", 10,
+				100, "/halting", 10, 100, "/zero", 1, 100);
+
+		List<ThroughputGate.Drop> drops = new ThroughputGate(20).compare(
+				summaries, baseline);
+
+		// /new and all of b.jtl have no baseline, /zero has a zero baseline
+		assertEquals(2, drops.size());
+		assertEquals("/halting", drops.get(0).getUri());
+		assertEquals(80, drops.get(0).getDecrease(), 0.001);
+		assertEquals("/dropping", drops.get(1).getUri());
+		assertEquals("a.jtl", drops.get(1).getReportFileName());
+		assertEquals(10, drops.get(1).getBaselineThroughput(), 0.001);
+		assertEquals(5, drops.get(1).getThroughput(), 0.001);
+		assertEquals(50, drops.get(1).getDecrease(), 0.001);
+	}
+
+	@Test
+	public void testReportDrop() throws Exception {
+		Map<String, PerformanceReportSummary> summaries = new LinkedHashMap<String, PerformanceReportSummary>();
+		addSummary(summaries, "a.jtl", "/steady", 10, 200);
+		Map<String, PerformanceReportSummary> baseline = new LinkedHashMap<String, PerformanceReportSummary>();
+		addSummary(baseline, "a.jtl", "/steady", 10, 100);
+
+		List<ThroughputGate.Drop> drops = new ThroughputGate(20).compare(
+				summaries, baseline);
+
+		assertEquals(2, drops.size());
+		assertNull(drops.get(0).getUri());
+		assertEquals(50, drops.get(0).getDecrease(), 0.001);
+		assertTrue(drops.get(0).toString().contains("(all URIs)"));
+		assertEquals("/steady", drops.get(1).getUri());
+	}
+}
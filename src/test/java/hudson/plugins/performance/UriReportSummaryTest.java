@@ -0,0 +1,48 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+public class UriReportSummaryTest {
+
+	private UriReport createUriReport(long... durations) {
+		UriReport uriReport = new UriReport(null, "uri", "uri");
+		for (long duration : durations) {
+			HttpSample httpSample = new HttpSample();
+			httpSample.setDuration(duration);
+			httpSample.setDate(new Date());
+			httpSample.setSuccessful(duration < 100);
+			httpSample.setHttpCode(duration < 100 ? "200" : "500");
+			uriReport.addHttpSample(httpSample);
+		}
+		return uriReport;
+	}
+
+	@Test
+	public void testCompareWith() {
+		UriReportSummary summary = new UriReportSummary(createUriReport(10, 20, 30, 200));
+		UriReportSummary baseline = new UriReportSummary(createUriReport(10, 20));
+
+		summary.compareWith(baseline);
+
+		assertEquals(2, summary.getSizeDiff());
+		assertEquals(65 - 15, summary.getAverageDiff());
+		assertEquals(30 - 20, summary.getMedianDiff());
+		assertEquals(25.0, summary.getErrorPercentDiff(), 0.001);
+		assertEquals("200", summary.getLastBuildHttpCodeIfChanged());
+	}
+
+	@Test
+	public void testCompareWithoutBaseline() {
+		UriReportSummary summary = new UriReportSummary(createUriReport(10, 20));
+
+		summary.compareWith(null);
+
+		assertEquals(0, summary.getSizeDiff());
+		assertEquals(0, summary.getAverageDiff());
+		assertEquals("", summary.getLastBuildHttpCodeIfChanged());
+	}
+}
@@ -63,4 +63,24 @@ public class UriReportTest {
 		assertTrue(uriReport.isFailed());
 	}
 
+	@Test
+	public void testAggregate() {
+		uriReport.aggregate();
+		HttpSample httpSample = new HttpSample();
+		httpSample.setDuration(AVERAGE);
+		httpSample.setDate(new Date());
+		httpSample.setSuccessful(true);
+		uriReport.addHttpSample(httpSample);
+
+		assertTrue(uriReport.isAggregated());
+		assertEquals(1, uriReport.getHttpSampleList().size());
+		assertEquals(4, uriReport.size());
+		assertEquals(2, uriReport.countErrors());
+		assertEquals(AVERAGE, uriReport.getAverage());
+		assertEquals(MIN, uriReport.getMin());
+		assertEquals(MAX, uriReport.getMax());
+		assertEquals(AVERAGE, uriReport.getMedian());
+		assertEquals(4, uriReport.getHistogram().getCount());
+	}
+
 }
@@ -0,0 +1,70 @@
+package hudson.plugins.performance;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+public class UriThresholdTest {
+
+	private UriReportSummary createUriSummary(String uri, long... durations) {
+		UriReport uriReport = new UriReport(null, uri, uri);
+		for (long duration : durations) {
+			HttpSample httpSample = new HttpSample();
+			httpSample.setDuration(duration);
+			httpSample.setDate(new Date());
+			httpSample.setSuccessful(true);
+			httpSample.setHttpCode("200");
+			uriReport.addHttpSample(httpSample);
+		}
+		return new UriReportSummary(uriReport);
+	}
+
+	@Test
+	public void testEvaluate() {
+		List<UriThreshold> thresholds = Arrays.asList(
+				new UriThreshold("/checkout", "LINE95", 800, "FAILURE"),
+				new UriThreshold("", "AVERAGE", 300, "UNSTABLE"),
+				new UriThreshold("/home", "MAX", 50, "UNSTABLE"),
+				new UriThreshold("/search.*", "AVERAGE", 50, "UNSTABLE"));
+		List<UriReportSummary> uriSummaries = Arrays.asList(
+				createUriSummary("/checkout", 100, 200, 300, 900),
+				createUriSummary("/home", 10, 20, 30, 40));
+
+		List<UriThreshold.Outcome> outcomes = UriThreshold.evaluate(thresholds,
+				uriSummaries);
+
+		assertEquals(4, outcomes.size());
+		assertFalse(outcomes.get(0).isPassed());
+		assertEquals("FAILURE", outcomes.get(0).getResult());
+		assertEquals(900, outcomes.get(0).getWorstValue(), 0.001);
+
+		assertFalse(outcomes.get(1).isPassed());
+		assertEquals(2, outcomes.get(1).getChecked());
+		assertEquals(1, outcomes.get(1).getExceeded());
+		assertEquals("/checkout", outcomes.get(1).getWorstUri());
+
+		assertTrue(outcomes.get(2).isPassed());
+		assertEquals(1, outcomes.get(2).getChecked());
+
+		assertTrue(outcomes.get(3).isPassed());
+		assertEquals(0, outcomes.get(3).getChecked());
+	}
+
+	@Test
+	public void testDescription() {
+		assertEquals("95% line of /checkout < 800 ms", new UriThreshold(
+				"/checkout", "LINE95", 800, "FAILURE").getDescription());
+		assertEquals("% of errors of .* < 2.5%", new UriThreshold(null,
+				"ERROR_PERCENT", 2.5, null).getDescription());
+	}
+
+	@Test
+	public void testCheckPattern() {
+		assertNull(UriThreshold.checkPattern("/search.*"));
+		assertNotNull(UriThreshold.checkPattern("/search("));
+	}
+}